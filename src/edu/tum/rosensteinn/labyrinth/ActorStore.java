@@ -0,0 +1,463 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth;
+
+import edu.tum.rosensteinn.labyrinth.entity.Actor;
+import edu.tum.rosensteinn.labyrinth.entity.Direction;
+import edu.tum.rosensteinn.labyrinth.entity.Entity;
+
+/**
+ * Holds the state of the entities in a {@link Level} that receive updates
+ * in parallel primitive arrays: their location, previous location and, for
+ * {@link Actor actors}, direction, speed and whether they move. The arrays
+ * are dense, an entity is found through its {@link Entity#getId() id}.
+ *
+ * While an entity is part of the store, the store is the only place its
+ * state is kept in, and the accessors of {@link Entity} and {@link Actor}
+ * read and write the arrays. This lets the level move all actors in one
+ * loop over the arrays, see {@link #integrate(int, int, double[])}, and
+ * find the entities that left their field without touching the objects.
+ *
+ * Entities can be put to sleep, see {@link Level#setSimulationLod(int,
+ * int, int)}. The awake entities are kept at the front of the arrays so
+ * that the level only has to loop over those.
+ */
+public final class ActorStore {
+
+    private Entity[] entities = new Entity[16];
+    private double[] x = new double[16];
+    private double[] y = new double[16];
+    private double[] prevX = new double[16];
+    private double[] prevY = new double[16];
+    private byte[] direction = new byte[16];
+    private int[] speed = new int[16];
+    private boolean[] moving = new boolean[16];
+    private int[] fieldX = new int[16];
+    private int[] fieldY = new int[16];
+    private int[] indexById = new int[16];
+    private int size = 0;
+    private int awakeCount = 0;
+
+    // Actors that can be steered concurrently, see
+    // Actor#canCalculateConcurrently(). The level moves them itself.
+    private boolean[] concurrent = new boolean[16];
+
+    // The location each actor moves to in the current update.
+    private double[] targetX = new double[16];
+    private double[] targetY = new double[16];
+
+    // The time that passed since the entity was updated the last time.
+    // While an entity sleeps, the level time at which it fell asleep is
+    // subtracted so the value only has to be touched when it wakes up.
+    private double[] elapsed = new double[16];
+
+    /**
+     * @return The number of entities in the store.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return The number of awake entities. These are at the indices
+     *         below this number.
+     */
+    public int getAwakeCount() {
+        return this.awakeCount;
+    }
+
+    /**
+     * @param index          An index between 0 and {@link #size()}.
+     * @return The entity at the specified index.
+     */
+    public Entity get(int index) {
+        return this.entities[index];
+    }
+
+    /**
+     * @param entity
+     * @return The index of the entity in the store, or -1 if it is not
+     *         part of the store.
+     */
+    public int indexOf(Entity entity) {
+        int id = entity.getId();
+        if (id < 0 || id >= this.indexById.length) {
+            return -1;
+        }
+        int index = this.indexById[id] - 1;
+        if (index < 0 || this.entities[index] != entity) {
+            return -1;
+        }
+        return index;
+    }
+
+    /**
+     * Adds an entity to the store. The entity must have been assigned
+     * an id by the level. From now on, the store holds the state of the
+     * entity.
+     *
+     * @param entity
+     * @param fieldX         The x coordinate of the field the entity
+     *                       is assigned to in the level.
+     * @param fieldY         The y coordinate of that field.
+     */
+    public void add(Entity entity, int fieldX, int fieldY) {
+        int id = entity.getId();
+        if (id < 0) {
+            throw new IllegalArgumentException("entity has no id");
+        }
+        if (entity.getStore() != null) {
+            throw new IllegalArgumentException("entity is part of another store");
+        }
+        if (id >= this.indexById.length) {
+            this.indexById = java.util.Arrays.copyOf(
+                    this.indexById, Math.max(id + 1, this.indexById.length * 2));
+        }
+        if (this.size == this.entities.length) {
+            this.grow(this.size * 2);
+        }
+        int index = this.size++;
+        this.entities[index] = entity;
+        this.x[index] = entity.getX();
+        this.y[index] = entity.getY();
+        this.prevX[index] = this.x[index];
+        this.prevY[index] = this.y[index];
+        if (entity instanceof Actor) {
+            Actor actor = (Actor) entity;
+            Direction direction = actor.getDirection();
+            this.direction[index] = direction == null ? -1 : direction.toByte();
+            this.speed[index] = actor.getSpeed();
+            this.moving[index] = actor.isMoving();
+            this.concurrent[index] = actor.canCalculateConcurrently();
+        }
+        else {
+            this.direction[index] = -1;
+            this.speed[index] = 0;
+            this.moving[index] = false;
+            this.concurrent[index] = false;
+        }
+        this.fieldX[index] = fieldX;
+        this.fieldY[index] = fieldY;
+        this.elapsed[index] = 0.0;
+        this.indexById[id] = index + 1;
+        entity.setStore(this);
+
+        // New entities are awake.
+        this.swap(index, this.awakeCount++);
+    }
+
+    /**
+     * Removes an entity from the store. The entity keeps its state itself
+     * again. The last entity in the store takes its place.
+     *
+     * @param entity
+     * @return {@code true} if the entity was part of the store.
+     */
+    public boolean remove(Entity entity) {
+        int index = this.indexOf(entity);
+        if (index < 0) {
+            return false;
+        }
+
+        // Hand the state back to the entity.
+        entity.setStore(null);
+        entity.setLocation(this.x[index], this.y[index]);
+        entity.setPrevLocation(this.prevX[index], this.prevY[index]);
+        if (entity instanceof Actor) {
+            Actor actor = (Actor) entity;
+            actor.setDirection(this.getDirection(index));
+            actor.setSpeed(this.speed[index]);
+            actor.setMoving(this.moving[index]);
+        }
+
+        // Keep the awake entities at the front.
+        if (index < this.awakeCount) {
+            this.swap(index, --this.awakeCount);
+            index = this.awakeCount;
+        }
+        int last = --this.size;
+        this.swap(index, last);
+        this.entities[last] = null;
+        this.indexById[entity.getId()] = 0;
+        return true;
+    }
+
+    /**
+     * Puts the awake entity at the specified index to sleep. The entity
+     * at the last awake index takes its place.
+     *
+     * @param index
+     * @param time           The current time of the level.
+     */
+    public void sleep(int index, double time) {
+        this.elapsed[index] -= time;
+        this.swap(index, --this.awakeCount);
+    }
+
+    /**
+     * Wakes up the sleeping entity at the specified index. The entity at
+     * the first sleeping index takes its place.
+     *
+     * @param index
+     * @param time           The current time of the level.
+     */
+    public void wake(int index, double time) {
+        this.elapsed[index] += time;
+        this.swap(index, this.awakeCount++);
+    }
+
+    /**
+     * @param index          The index of an awake entity.
+     * @return The time that passed since the entity at the specified
+     *         index has been updated the last time.
+     */
+    public double getElapsed(int index) {
+        return this.elapsed[index];
+    }
+
+    public void setElapsed(int index, double elapsed) {
+        this.elapsed[index] = elapsed;
+    }
+
+    /**
+     * Remembers the location of each entity in a range as its previous
+     * location, for the entities that are updated with a time other than
+     * zero.
+     *
+     * @param begin
+     * @param end
+     * @param steps          The time each entity is updated with, by index.
+     */
+    public void saveLocations(int begin, int end, double[] steps) {
+        for (int i = begin; i < end; ++i) {
+            if (steps[i] != 0.0) {
+                this.prevX[i] = this.x[i];
+                this.prevY[i] = this.y[i];
+            }
+        }
+    }
+
+    /**
+     * Calculates the locations the {@link #isConcurrent(int) concurrent}
+     * actors in a range move to, see {@link #integrate(int, double)}.
+     *
+     * @param begin
+     * @param end
+     * @param steps          The time each entity is updated with, by index.
+     */
+    public void integrate(int begin, int end, double[] steps) {
+        for (int i = begin; i < end; ++i) {
+            if (this.concurrent[i] && steps[i] != 0.0) {
+                this.integrate(i, steps[i]);
+            }
+        }
+    }
+
+    /**
+     * Calculates the location the entity at the specified index moves to
+     * in the given time, if nothing blocks it. An entity that moves
+     * travels in its direction and is snapped to the closest field on the
+     * other axis. The result is available from {@link #getTargetX(int)}
+     * and {@link #getTargetY(int)}.
+     *
+     * @param index
+     * @param deltaTime
+     */
+    public void integrate(int index, double deltaTime) {
+        int direction = this.direction[index];
+        if (!this.moving[index] || direction < 0) {
+            this.targetX[index] = this.x[index];
+            this.targetY[index] = this.y[index];
+            return;
+        }
+        Direction value = Direction.fromByte((byte) direction);
+        double amount = this.speed[index] * deltaTime;
+        this.targetX[index] = Direction.move(this.x[index], value.getDeltaX(), amount);
+        this.targetY[index] = Direction.move(this.y[index], value.getDeltaY(), amount);
+    }
+
+    /**
+     * @param index
+     * @return {@code true} if the target location of the entity at the
+     *         specified index is in the same field as its location, so it
+     *         can move there without crossing any other field.
+     */
+    public boolean isTargetInField(int index) {
+        return Math.round(this.targetX[index]) == Math.round(this.x[index])
+            && Math.round(this.targetY[index]) == Math.round(this.y[index]);
+    }
+
+    public double getTargetX(int index) {
+        return this.targetX[index];
+    }
+
+    public double getTargetY(int index) {
+        return this.targetY[index];
+    }
+
+    /**
+     * @param index
+     * @return {@code true} if the entity at the specified index is an
+     *         actor that {@link Actor#canCalculateConcurrently() can be
+     *         steered concurrently}.
+     */
+    public boolean isConcurrent(int index) {
+        return this.concurrent[index];
+    }
+
+    /**
+     * @param index
+     * @return {@code true} if the location of the entity at the specified
+     *         index is not in the field it is assigned to.
+     */
+    public boolean hasLeftField(int index) {
+        return Math.round(this.x[index]) != this.fieldX[index]
+            || Math.round(this.y[index]) != this.fieldY[index];
+    }
+
+    public double getX(int index) {
+        return this.x[index];
+    }
+
+    public double getY(int index) {
+        return this.y[index];
+    }
+
+    public void setLocation(int index, double x, double y) {
+        this.x[index] = x;
+        this.y[index] = y;
+    }
+
+    public double getPrevX(int index) {
+        return this.prevX[index];
+    }
+
+    public double getPrevY(int index) {
+        return this.prevY[index];
+    }
+
+    public void setPrevLocation(int index, double x, double y) {
+        this.prevX[index] = x;
+        this.prevY[index] = y;
+    }
+
+    public Direction getDirection(int index) {
+        return Direction.fromByte(this.direction[index]);
+    }
+
+    public void setDirection(int index, Direction direction) {
+        this.direction[index] = direction == null ? -1 : direction.toByte();
+    }
+
+    public int getSpeed(int index) {
+        return this.speed[index];
+    }
+
+    public void setSpeed(int index, int speed) {
+        this.speed[index] = speed;
+    }
+
+    public boolean isMoving(int index) {
+        return this.moving[index];
+    }
+
+    public void setMoving(int index, boolean moving) {
+        this.moving[index] = moving;
+    }
+
+    public int getFieldX(int index) {
+        return this.fieldX[index];
+    }
+
+    public int getFieldY(int index) {
+        return this.fieldY[index];
+    }
+
+    /**
+     * Changes the field the entity at the specified index is assigned to.
+     */
+    public void setField(int index, int fieldX, int fieldY) {
+        this.fieldX[index] = fieldX;
+        this.fieldY[index] = fieldY;
+    }
+
+    private void grow(int capacity) {
+        this.entities = java.util.Arrays.copyOf(this.entities, capacity);
+        this.x = java.util.Arrays.copyOf(this.x, capacity);
+        this.y = java.util.Arrays.copyOf(this.y, capacity);
+        this.prevX = java.util.Arrays.copyOf(this.prevX, capacity);
+        this.prevY = java.util.Arrays.copyOf(this.prevY, capacity);
+        this.direction = java.util.Arrays.copyOf(this.direction, capacity);
+        this.speed = java.util.Arrays.copyOf(this.speed, capacity);
+        this.moving = java.util.Arrays.copyOf(this.moving, capacity);
+        this.concurrent = java.util.Arrays.copyOf(this.concurrent, capacity);
+        this.targetX = java.util.Arrays.copyOf(this.targetX, capacity);
+        this.targetY = java.util.Arrays.copyOf(this.targetY, capacity);
+        this.fieldX = java.util.Arrays.copyOf(this.fieldX, capacity);
+        this.fieldY = java.util.Arrays.copyOf(this.fieldY, capacity);
+        this.elapsed = java.util.Arrays.copyOf(this.elapsed, capacity);
+    }
+
+    private void swap(int a, int b) {
+        if (a == b) {
+            return;
+        }
+        Entity entity = this.entities[a];
+        this.entities[a] = this.entities[b];
+        this.entities[b] = entity;
+        ActorStore.swap(this.x, a, b);
+        ActorStore.swap(this.y, a, b);
+        ActorStore.swap(this.prevX, a, b);
+        ActorStore.swap(this.prevY, a, b);
+        ActorStore.swap(this.targetX, a, b);
+        ActorStore.swap(this.targetY, a, b);
+        ActorStore.swap(this.elapsed, a, b);
+        byte direction = this.direction[a];
+        this.direction[a] = this.direction[b];
+        this.direction[b] = direction;
+        boolean flag = this.moving[a];
+        this.moving[a] = this.moving[b];
+        this.moving[b] = flag;
+        flag = this.concurrent[a];
+        this.concurrent[a] = this.concurrent[b];
+        this.concurrent[b] = flag;
+        ActorStore.swap(this.speed, a, b);
+        ActorStore.swap(this.fieldX, a, b);
+        ActorStore.swap(this.fieldY, a, b);
+        this.indexById[this.entities[a].getId()] = a + 1;
+        this.indexById[this.entities[b].getId()] = b + 1;
+    }
+
+    private static void swap(double[] array, int a, int b) {
+        double value = array[a];
+        array[a] = array[b];
+        array[b] = value;
+    }
+
+    private static void swap(int[] array, int a, int b) {
+        int value = array[a];
+        array[a] = array[b];
+        array[b] = value;
+    }
+
+}
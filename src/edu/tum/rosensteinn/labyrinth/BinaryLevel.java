@@ -0,0 +1,375 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth;
+
+import edu.tum.rosensteinn.labyrinth.entity.*;
+import edu.tum.rosensteinn.labyrinth.tools.VarInt;
+
+/**
+ * Reads and writes levels in a compact binary format. All numbers are
+ * big endian, a varint is an unsigned integer stored in groups of seven
+ * bits, lowest first, with the highest bit set if another group follows.
+ *
+ * <pre>
+ *   int     magic number "LBLV"
+ *   byte    format version
+ *   int     width
+ *   int     height
+ *   byte    flags, bit 0 is set if a seed and bit 1 if a player follows
+ *   long    seed (if flag 0)
+ *   varint  number of enemies
+ *   varint  number of keys
+ *   varint  length of the player data, followed by the data as UTF-8
+ *           (if flag 1), see {@link Player#save()}
+ *   byte    tile encoding
+ *   ...     tiles
+ *   ...     entities
+ * </pre>
+ *
+ * The tiles are stored row by row as {@link Tile#toByte()} values, either
+ * run-length encoded (encoding 0) as varints holding the tile in the lower
+ * three bits and the run length minus one above, or packed (encoding 1)
+ * with two tiles per byte, the first in the lower four bits. The writer
+ * picks whichever is smaller.
+ *
+ * The entities follow as pairs of a varint and a type byte (4 for an
+ * {@link Enemy}, 5 for a {@link Key}, as in the properties format). The
+ * varint is the difference of the field index {@code x * height + y} to
+ * that of the previous entity, so the entities are added in the same
+ * order as by the {@link PropertiesLevelReader}.
+ */
+public final class BinaryLevel {
+
+    public static final int MAGIC = 0x4C424C56;
+    public static final int VERSION = 1;
+
+    private static final int FLAG_SEED = 1;
+    private static final int FLAG_PLAYER = 2;
+    private static final int ENCODING_RLE = 0;
+    private static final int ENCODING_PACKED = 1;
+    private static final int TYPE_ENEMY = 4;
+    private static final int TYPE_KEY = 5;
+
+    private BinaryLevel() {
+    }
+
+    /**
+     * @param data
+     * @return {@code true} if the data starts with the magic number of
+     *         the binary format. The position of the buffer is not changed.
+     */
+    public static boolean isBinary(java.nio.ByteBuffer data) {
+        return data.remaining() >= 4 && data.getInt(data.position()) == MAGIC;
+    }
+
+    /**
+     * Writes the tiles, enemies, keys and the player of a level.
+     *
+     * @param level
+     * @param out
+     * @param includeSeed    {@code true} to store the seed of the level.
+     * @throws java.io.IOException
+     */
+    public static void write(Level level, java.io.OutputStream out, boolean includeSeed)
+        throws java.io.IOException
+    {
+        Point size = level.getSize();
+        java.io.DataOutputStream data = new java.io.DataOutputStream(
+                new java.io.BufferedOutputStream(out));
+
+        // Collect the entities ordered by their field index.
+        java.util.List<Entity> entities = new java.util.ArrayList<>();
+        int enemies = 0;
+        int keys = 0;
+        for (Entity entity : level.getEntitiesByClass(Entity.class)) {
+            if (entity.getClass() == Enemy.class) {
+                entities.add(entity);
+                enemies += 1;
+            }
+            else if (entity.getClass() == Key.class) {
+                entities.add(entity);
+                keys += 1;
+            }
+        }
+        long[] order = new long[entities.size()];
+        for (int i = 0; i < order.length; ++i) {
+            Point p = entities.get(i).getLocation().toPoint();
+            if (p.x < 0 || p.x >= size.x || p.y < 0 || p.y >= size.y) {
+                throw new IllegalArgumentException("entity outside of the level");
+            }
+            order[i] = ((long) (p.x * size.y + p.y) << 32) | i;
+        }
+        java.util.Arrays.sort(order);
+
+        Player player = level.getPlayer();
+        int flags = (includeSeed ? FLAG_SEED : 0) | (player != null ? FLAG_PLAYER : 0);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(size.x);
+        data.writeInt(size.y);
+        data.writeByte(flags);
+        if (includeSeed) {
+            data.writeLong(level.getSeed());
+        }
+        VarInt.write(data, enemies);
+        VarInt.write(data, keys);
+        if (player != null) {
+            byte[] bytes = player.save().getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            VarInt.write(data, bytes.length);
+            data.write(bytes);
+        }
+
+        // Encode the tiles both ways and keep the smaller one.
+        java.io.ByteArrayOutputStream rle = new java.io.ByteArrayOutputStream();
+        java.io.DataOutputStream rleData = new java.io.DataOutputStream(rle);
+        int count = size.x * size.y;
+        byte[] packed = new byte[(count + 1) / 2];
+        byte run = -1;
+        int runLength = 0;
+        for (int index = 0; index < count; ++index) {
+            byte tile = level.getTileAt(index % size.x, index / size.x).toByte();
+            packed[index >> 1] |= tile << ((index & 1) << 2);
+            if (tile != run && runLength > 0) {
+                VarInt.write(rleData, ((runLength - 1) << 3) | run);
+                runLength = 0;
+            }
+            run = tile;
+            runLength += 1;
+        }
+        if (runLength > 0) {
+            VarInt.write(rleData, ((runLength - 1) << 3) | run);
+        }
+        if (rle.size() <= packed.length) {
+            data.writeByte(ENCODING_RLE);
+            rle.writeTo(data);
+        }
+        else {
+            data.writeByte(ENCODING_PACKED);
+            data.write(packed);
+        }
+
+        int previous = 0;
+        for (long entry : order) {
+            int index = (int) (entry >>> 32);
+            Entity entity = entities.get((int) entry);
+            VarInt.write(data, index - previous);
+            data.writeByte(entity instanceof Enemy ? TYPE_ENEMY : TYPE_KEY);
+            previous = index;
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a level from the binary format.
+     *
+     * @param data           The data, starting at the magic number.
+     * @param seed           The seed of the level, or {@code null} to use
+     *                       the seed stored in the data or a random one.
+     * @return The level.
+     * @throws DataFormatException if the data is invalid.
+     */
+    public static Level read(java.nio.ByteBuffer data, Long seed) throws DataFormatException {
+        data.order(java.nio.ByteOrder.BIG_ENDIAN);
+        try {
+            if (data.getInt() != MAGIC) {
+                throw new DataFormatException("not a binary level");
+            }
+            int version = data.get() & 0xFF;
+            if (version != VERSION) {
+                throw new DataFormatException("unsupported binary level version %d", version);
+            }
+            int width = data.getInt();
+            int height = data.getInt();
+            if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+                throw new DataFormatException("Invalid Width and/or Height.");
+            }
+            int flags = data.get();
+            if ((flags & FLAG_SEED) != 0) {
+                long stored = data.getLong();
+                if (seed == null) {
+                    seed = stored;
+                }
+            }
+            int enemies = VarInt.read(data);
+            int keys = VarInt.read(data);
+            Player player = null;
+            if ((flags & FLAG_PLAYER) != 0) {
+                int length = VarInt.read(data);
+                if (length > data.remaining()) {
+                    throw new DataFormatException("binary level data is truncated");
+                }
+                byte[] bytes = new byte[length];
+                data.get(bytes);
+                try {
+                    player = Player.load(new String(bytes, java.nio.charset.StandardCharsets.UTF_8));
+                }
+                catch (DataFormatException e) {
+                    throw new DataFormatException("invalid Player data: " + e.getMessage());
+                }
+            }
+
+            Level level = seed == null
+                    ? new Level(new Point(width, height))
+                    : new Level(new Point(width, height), seed);
+
+            int count = width * height;
+            int encoding = data.get();
+            if (encoding == ENCODING_RLE) {
+                int index = 0;
+                while (index < count) {
+                    int run = VarInt.read(data);
+                    Tile tile = BinaryLevel.readTile((byte) (run & 0x07));
+                    int length = (run >>> 3) + 1;
+                    if (length > count - index) {
+                        throw new DataFormatException("invalid tile run at field %d", index);
+                    }
+                    if (tile != Tile.Empty) {
+                        for (int end = index + length; index < end; ++index) {
+                            level.setTileAt(index % width, index / width, tile);
+                        }
+                    }
+                    else {
+                        index += length;
+                    }
+                }
+            }
+            else if (encoding == ENCODING_PACKED) {
+                for (int index = 0; index < count; index += 2) {
+                    int value = data.get();
+                    Tile tile = BinaryLevel.readTile((byte) (value & 0x0F));
+                    if (tile != Tile.Empty) {
+                        level.setTileAt(index % width, index / width, tile);
+                    }
+                    if (index + 1 < count) {
+                        tile = BinaryLevel.readTile((byte) ((value >> 4) & 0x0F));
+                        if (tile != Tile.Empty) {
+                            level.setTileAt((index + 1) % width, (index + 1) / width, tile);
+                        }
+                    }
+                }
+            }
+            else {
+                throw new DataFormatException("unknown tile encoding %d", encoding);
+            }
+
+            int index = 0;
+            for (int i = enemies + keys; i > 0; --i) {
+                index += VarInt.read(data);
+                if (index < 0 || index >= count) {
+                    throw new DataFormatException("entity outside of the level");
+                }
+                int type = data.get();
+                Entity entity;
+                if (type == TYPE_ENEMY && enemies > 0) {
+                    entity = new Enemy();
+                    enemies -= 1;
+                }
+                else if (type == TYPE_KEY && keys > 0) {
+                    entity = new Key();
+                    keys -= 1;
+                }
+                else {
+                    throw new DataFormatException("unexpected entity type %d", type);
+                }
+                entity.setLocation(index / height, index % height);
+                level.addEntity(entity);
+            }
+            level.commitChanges();
+
+            // Make sure the player would not be placed on a solid entity.
+            if (player != null) {
+                if (level.isSolidAt(player.getLocation().toPoint())) {
+                    throw new DataFormatException(
+                            "Player location is occupied with solid entity");
+                }
+                level.addEntity(player);
+                level.commitChanges();
+            }
+            return level;
+        }
+        catch (java.nio.BufferUnderflowException e) {
+            throw new DataFormatException("binary level data is truncated");
+        }
+    }
+
+    /**
+     * Converts a level file in the properties format to the binary format.
+     *
+     * @param in
+     * @param out
+     * @throws java.io.IOException
+     * @throws DataFormatException if the input is not a valid level.
+     */
+    public static void convert(java.io.File in, java.io.File out) throws java.io.IOException {
+        Level level;
+        boolean hasSeed;
+        PropertiesLevelReader reader = new PropertiesLevelReader(Main.readFile(in));
+        level = reader.read(null);
+        hasSeed = reader.getSavedSeed() != null;
+        try (java.io.OutputStream stream = new java.io.FileOutputStream(out)) {
+            BinaryLevel.write(level, stream, hasSeed);
+        }
+    }
+
+    /**
+     * Converts level files to the binary format. Each {@code .properties}
+     * file is written next to it with the extension {@code .level}.
+     *
+     * @param args           The files to convert.
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("usage: --convert LEVEL.properties...");
+            System.exit(2);
+        }
+        int failures = 0;
+        for (String arg : args) {
+            java.io.File in = new java.io.File(arg);
+            String name = in.getName();
+            if (name.endsWith(".properties")) {
+                name = name.substring(0, name.length() - ".properties".length());
+            }
+            java.io.File out = new java.io.File(in.getParentFile(), name + ".level");
+            try {
+                BinaryLevel.convert(in, out);
+                System.out.println(String.format("%s -> %s (%d -> %d bytes)",
+                        in, out, in.length(), out.length()));
+            }
+            catch (java.io.IOException | DataFormatException e) {
+                System.err.println(in + ": " + e.getMessage());
+                failures += 1;
+            }
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Tile readTile(byte value) {
+        if (value < 0 || value > Tile.StaticThreat.toByte()) {
+            throw new DataFormatException("invalid tile %d", value);
+        }
+        return Tile.fromByte(value);
+    }
+
+}
@@ -37,6 +37,10 @@ public class DataFormatException extends RuntimeException {
         super(message);
     }
 
+    public DataFormatException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
     public DataFormatException(String fmt, Object ... params) {
         super(String.format(fmt, params));
     }
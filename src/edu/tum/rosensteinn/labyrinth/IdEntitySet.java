@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth;
+
+import edu.tum.rosensteinn.labyrinth.entity.Entity;
+
+/**
+ * A {@link java.util.Set} implementation for {@link Entity} objects that
+ * stores the entities densely in an array. The position of each entity in
+ * the array is looked up through its {@link Entity#getId() id}, thus only
+ * entities that have an id (ie. that are queued for or part of a {@link
+ * Level}) can be added, and only sets of a single level may be used.
+ *
+ * Adding, removing and testing an entity takes constant time. Removing an
+ * entity moves the last entity into its place, so the iteration order is
+ * the insertion order until the first removal, and deterministic after.
+ * Unlike a {@link edu.tum.rosensteinn.labyrinth.entity.EntitySet}, the
+ * order does not depend on the hash codes of the entities.
+ */
+final class IdEntitySet extends java.util.AbstractSet<Entity> {
+
+    private Entity[] entities;
+    private int[] indexById;
+    private int size;
+
+    IdEntitySet() {
+        this(16);
+    }
+
+    IdEntitySet(java.util.Collection<? extends Entity> c) {
+        this(Math.max(16, c.size()));
+        this.addAll(c);
+    }
+
+    IdEntitySet(int initialCapacity) {
+        this.entities = new Entity[Math.max(1, initialCapacity)];
+        this.indexById = new int[Math.max(1, initialCapacity)];
+        this.size = 0;
+    }
+
+    /**
+     * @param index          An index between 0 and {@link #size()}.
+     * @return The entity at the specified index.
+     */
+    public Entity get(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("" + index);
+        }
+        return this.entities[index];
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean contains(Object obj) {
+        return obj instanceof Entity && this.indexOf((Entity) obj) >= 0;
+    }
+
+    @Override
+    public boolean add(Entity entity) {
+        int id = entity.getId();
+        if (id < 0) {
+            throw new IllegalArgumentException("entity has no id");
+        }
+        if (this.indexOf(entity) >= 0) {
+            return false;
+        }
+        if (id >= this.indexById.length) {
+            this.indexById = java.util.Arrays.copyOf(
+                    this.indexById, Math.max(id + 1, this.indexById.length * 2));
+        }
+        if (this.size == this.entities.length) {
+            this.entities = java.util.Arrays.copyOf(this.entities, this.size * 2);
+        }
+        this.entities[this.size] = entity;
+        this.indexById[id] = ++this.size;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object obj) {
+        if (!(obj instanceof Entity)) {
+            return false;
+        }
+        int index = this.indexOf((Entity) obj);
+        if (index < 0) {
+            return false;
+        }
+        this.removeAt(index);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < this.size; ++i) {
+            this.indexById[this.entities[i].getId()] = 0;
+            this.entities[i] = null;
+        }
+        this.size = 0;
+    }
+
+    @Override
+    public java.util.Iterator<Entity> iterator() {
+        return new java.util.Iterator<Entity>() {
+            private int index = 0;
+            private boolean removable = false;
+
+            @Override
+            public boolean hasNext() {
+                return this.index < size;
+            }
+
+            @Override
+            public Entity next() {
+                if (this.index >= size) {
+                    throw new java.util.NoSuchElementException();
+                }
+                this.removable = true;
+                return entities[this.index++];
+            }
+
+            @Override
+            public void remove() {
+                if (!this.removable) {
+                    throw new IllegalStateException();
+                }
+                // The last entity moves into the removed entity's place
+                // and must be returned next.
+                this.removable = false;
+                removeAt(--this.index);
+            }
+        };
+    }
+
+    // ----------------------------------------------------------------------
+
+    private int indexOf(Entity entity) {
+        int id = entity.getId();
+        if (id < 0 || id >= this.indexById.length) {
+            return -1;
+        }
+        int index = this.indexById[id] - 1;
+        if (index < 0 || this.entities[index] != entity) {
+            return -1;
+        }
+        return index;
+    }
+
+    private void removeAt(int index) {
+        Entity entity = this.entities[index];
+        int last = --this.size;
+        if (index != last) {
+            Entity moved = this.entities[last];
+            this.entities[index] = moved;
+            this.indexById[moved.getId()] = index + 1;
+        }
+        this.entities[last] = null;
+        this.indexById[entity.getId()] = 0;
+    }
+
+}
@@ -23,38 +23,206 @@
 package edu.tum.rosensteinn.labyrinth;
 
 import edu.tum.rosensteinn.labyrinth.gui.Event;
+import edu.tum.rosensteinn.labyrinth.tools.LongIntMap;
 import edu.tum.rosensteinn.labyrinth.entity.*;
 
 /**
  * A level represents a collection of {@link Entity} objects represented
  * in a two dimensional field where each field can hold zero or more
  * entities.
+ *
+ * Static level geometry (see {@link Tile}) is not stored as entities but
+ * in a separate tile layer that holds a single byte per field. Only
+ * dynamic or stateful entities are kept as objects.
+ *
+ * The tile layer is stored in square chunks that are only allocated once
+ * something is placed in them, thus the memory required by a level
+ * scales with its content rather than its size. Dynamic entities are
+ * only stored for fields that are actually occupied.
  */
 public class Level {
 
+    // The number of actors below which an update is not split any further
+    // in parallel updates.
+    private static final int PARALLEL_GRAIN = 256;
+
+    // The number of ticks after which is decided which entities sleep
+    // when a simulation level of detail is used.
+    private static final int LOD_SWEEP_TICKS = 30;
+
+    private static final int CHUNK_BITS = 5;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Returned by getEntitiesAt() for fields without entities.
+    private static final EntityList EMPTY_FIELD = new EntityList(0);
+
+    /**
+     * Steers a range of actors and calculates their new locations for a
+     * parallel update, see {@link Level#update(double)}.
+     */
+    private static final class PlanTask extends java.util.concurrent.RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Level level;
+        private final int begin;
+        private final int end;
+
+        PlanTask(Level level, int begin, int end) {
+            this.level = level;
+            this.begin = begin;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.begin > PARALLEL_GRAIN) {
+                int middle = (this.begin + this.end) >>> 1;
+                invokeAll(
+                        new PlanTask(this.level, this.begin, middle),
+                        new PlanTask(this.level, middle, this.end));
+                return;
+            }
+            this.level.plan(this.begin, this.end);
+        }
+
+    }
+
+    /**
+     * A read-only view of the entities of several classes, see {@link
+     * Level#getEntitiesByClass(Class)}.
+     */
+    private static final class ClassView extends java.util.AbstractList<Entity> {
+
+        // The lists of entities by exact class, in the order of the
+        // classes in entitiesByClass.
+        final java.util.List<EntityList> lists = new java.util.ArrayList<>(2);
+
+        @Override
+        public Entity get(int index) {
+            if (index >= 0) {
+                for (int i = 0; i < this.lists.size(); ++i) {
+                    EntityList list = this.lists.get(i);
+                    if (index < list.size()) {
+                        return list.get(index);
+                    }
+                    index -= list.size();
+                }
+            }
+            throw new IndexOutOfBoundsException("" + index);
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (int i = 0; i < this.lists.size(); ++i) {
+                size += this.lists.get(i).size();
+            }
+            return size;
+        }
+
+    }
+
+    /**
+     * A square block of fields in the level.
+     */
+    private static final class Chunk {
+
+        final byte[] tiles = new byte[CHUNK_SIZE * CHUNK_SIZE];
+
+        // One bit per field that is set if the field contains a solid
+        // tile or at least one solid entity.
+        final long[] solid = new long[CHUNK_SIZE * CHUNK_SIZE / 64];
+
+    }
+
     private final Point size;
-    private final EntityList[][] fields;
+    private final long seed;
+    private final java.util.SplittableRandom random;
+    private final int chunksX;
+    private final Chunk[] chunks;
+
+    // Maps the packed coordinate (see Point.pack()) of each field that
+    // contains dynamic entities to a slot in the arrays below. A slot
+    // holds the entities in the field and the one with the highest
+    // z-depth. Slots of fields that became empty are reused.
+    private final LongIntMap fieldSlots = new LongIntMap();
+    private EntityList[] slotFields = new EntityList[16];
+    private Entity[] slotTops = new Entity[16];
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount = 0;
+    private int slotCount = 0;
 
-    private final EntitySet entities = new EntitySet();
-    private final EntitySet removedEntities = new EntitySet();
-    private final EntitySet addedEntities = new EntitySet();
+    private final IdEntitySet entities = new IdEntitySet();
+    private final IdEntitySet removedEntities = new IdEntitySet();
+    private final IdEntitySet addedEntities = new IdEntitySet();
+    private final EntityList releasedEntities = new EntityList();
+    private final ActorStore actors = new ActorStore();
+
+    // Whether the first phase of an update runs in parallel.
+    private boolean parallelUpdates = false;
+
+    // The time each awake actor is updated with in the current update,
+    // zero for actors that are skipped.
+    private double[] steps = new double[0];
+
+    // Simulation level of detail, see setSimulationLod().
+    private boolean lod = false;
+    private int lodActiveRadius = 0;
+    private int lodSleepRadius = 0;
+    private int lodReducedInterval = 1;
+    private int lodTicksSinceSweep = 0;
+    private long ticks = 0;
+    private double time = 0.0;
+
+    private RewindBuffer rewindBuffer = null;
+
+    // Ids of removed entities that can be assigned to new entities.
+    private int[] freeIds = new int[16];
+    private int freeIdCount = 0;
+    private int nextId = 0;
+
+    // Entities indexed by their exact class in the order the classes were
+    // first added, maintained by commitChanges().
+    private final java.util.Map<Class<? extends Entity>, EntityList> entitiesByClass
+            = new java.util.LinkedHashMap<>();
+
+    // Views returned by getEntitiesByClass() by the class searched for.
+    private final java.util.Map<Class<? extends Entity>, ClassView> classViews
+            = new java.util.HashMap<>();
+    private Player player = null;
+    private int remainingKeys = 0;
+
+    // Entities by the event types they subscribed to.
+    private final java.util.Map<Class<? extends Event>, IdEntitySet> subscribers
+            = new java.util.LinkedHashMap<>();
+
+    /**
+     * Create a new level with the specified size and a random seed. The
+     * size of the level can not be altered later on.
+     *
+     * @param size           The size of the level.
+     */
+    public Level(Point size) {
+        this(size, new java.util.SplittableRandom().nextLong());
+    }
 
     /**
      * Create a new level with the specified size. The size of the
      * level can not be altered later on.
      *
      * @param size           The size of the level.
+     * @param seed           The seed of the level's random numbers, see
+     *                       {@link #getRandom()}.
      */
-    public Level(Point size) {
+    public Level(Point size, long seed) {
         this.size = size;
-        this.fields = new EntityList[size.x][size.y];
-
-        // Initialize all fields with an empty list.
-        for (int x = 0; x < size.x; ++x) {
-            for (int y = 0; y < size.y; ++y) {
-                this.fields[x][y] = new EntityList();
-            }
-        }
+        this.seed = seed;
+        this.random = new java.util.SplittableRandom(seed);
+        this.chunksX = (size.x + CHUNK_MASK) >> CHUNK_BITS;
+        int chunksY = (size.y + CHUNK_MASK) >> CHUNK_BITS;
+        this.chunks = new Chunk[this.chunksX * chunksY];
     }
 
     /**
@@ -71,13 +239,14 @@ public class Level {
         }
         props.setProperty("Width", "" + this.size.x);
         props.setProperty("Height", "" + this.size.y);
+        props.setProperty("Seed", "" + this.seed);
         Player player = this.getPlayer();
         if (player != null) {
             props.setProperty("Player", player.save());
         }
         for (int x = 0; x < this.size.x; ++x) {
             for (int y = 0; y < this.size.y; ++y) {
-                Entity entity = this.getEntityAt(new Point(x, y));
+                Entity entity = this.getEntityAt(x, y);
                 if (entity == null)
                     continue;
 
@@ -111,47 +280,350 @@ public class Level {
     }
 
     /**
-     * Propagates the specified {@link Event} to the entities in the level.
+     * Propagates the specified {@link Event} to the entities in the level
+     * that subscribed to its type (see {@link Entity#getEventTypes()}).
+     * The propagation stops at the first entity that returns {@code true}
+     * from {@link Entity#onEvent(Level, Event)}.
      *
-     * @param event          The event to pass on to all entities.
+     * @param event          The event to pass on to the entities.
      */
     public void event(Event event) {
-        for (Entity entity : this.entities) {
-            entity.onEvent(this, event);
+        for (java.util.Map.Entry<Class<? extends Event>, IdEntitySet> entry
+                : this.subscribers.entrySet()) {
+            if (!entry.getKey().isInstance(event)) {
+                continue;
+            }
+            for (Entity entity : entry.getValue()) {
+                if (entity.onEvent(this, event)) {
+                    return;
+                }
+            }
         }
     }
 
     /**
-     * This method propagates the update to all entities it contains.
+     * This method propagates the update to all entities it contains that
+     * {@link Entity#receivesUpdates() receive updates}.
      * Entities that are queued for adding or removal are processed
      * before and after the update and will be updated as well. If an
      * entity creates another entity during an update phase, this
      * <b>new entity</b> will not get the same update phase.
      *
+     * The fields are only updated for entities that moved to another
+     * field, after all entities have been updated. Only entities that
+     * receive updates may change their location.
+     *
+     * The update runs in two phases. First the actors that {@link
+     * Actor#canCalculateConcurrently() allow it} are steered and their new
+     * locations are calculated in one loop over the {@link ActorStore}.
+     * If {@link #setParallelUpdates(boolean) parallel updates} are enabled
+     * and there are enough entities, this phase runs in parallel. Then
+     * all entities are moved or updated one after another, so collisions
+     * are resolved the same way independent of the number of threads.
+     * Actors that stay within their field are moved without walking their
+     * path.
+     *
+     * With a {@link #setSimulationLod(int, int, int) simulation level of
+     * detail}, entities far away from the player are updated less often
+     * or not at all.
+     *
      * @param deltaTime
      */
     public void update(double deltaTime) {
-        // Update all entities.
-        for (Entity entity : this.entities) {
-            entity.prevLocation.copyFrom(entity.location);
-            entity.update(this, deltaTime);
+        ActorStore actors = this.actors;
+        this.ticks += 1;
+        this.time += deltaTime;
+
+        // Decide which entities to update and with which time.
+        if (this.lod && ++this.lodTicksSinceSweep >= LOD_SWEEP_TICKS) {
+            this.lodTicksSinceSweep = 0;
+            this.sweepSleepingEntities();
+        }
+        int count = actors.getAwakeCount();
+        if (this.steps.length < count) {
+            this.steps = new double[Math.max(count, this.steps.length * 2)];
+        }
+        double[] steps = this.steps;
+        for (int i = 0; i < count; ++i) {
+            steps[i] = this.lod ? this.getLodStep(i, deltaTime) : deltaTime;
         }
 
+        // Steer the actors and calculate where they move.
+        if (this.parallelUpdates && count > PARALLEL_GRAIN) {
+            java.util.concurrent.ForkJoinPool.commonPool().invoke(
+                    new PlanTask(this, 0, count));
+        }
+        else {
+            this.plan(0, count);
+        }
 
-        // Clear all fields that store entity locations for quick access.
-        // We will restore it later in this function with the updated
-        // entity locations.
-        for (int x = 0; x < this.size.x; ++x) {
-            for (int y = 0; y < this.size.y; ++y) {
-                this.fields[x][y].clear();
+        // Move or update all entities.
+        for (int i = 0; i < count; ++i) {
+            double step = steps[i];
+            if (step == 0.0) {
+                continue;
+            }
+            if (!actors.isConcurrent(i)) {
+                actors.get(i).update(this, step);
+            }
+            else if (actors.isTargetInField(i)) {
+                actors.setLocation(i, actors.getTargetX(i), actors.getTargetY(i));
+            }
+            else {
+                ((Actor) actors.get(i)).moveTo(this, actors.getTargetX(i), actors.getTargetY(i));
             }
         }
 
-        // Update the fields array.
-        for (Entity entity : this.entities) {
-            this.assignEntityToField(entity);
+        // Move the entities that left their field.
+        for (int i = 0; i < count; ++i) {
+            if (actors.hasLeftField(i)) {
+                Entity entity = actors.get(i);
+                int x = (int) Math.round(actors.getX(i));
+                int y = (int) Math.round(actors.getY(i));
+                this.removeEntityFromField(entity, actors.getFieldX(i), actors.getFieldY(i));
+                this.assignEntityToField(entity, x, y);
+                actors.setField(i, x, y);
+            }
         }
         this.commitChanges();
+
+        if (this.rewindBuffer != null) {
+            this.rewindBuffer.tick();
+        }
+    }
+
+    /**
+     * The first phase of an update for a range of awake entities, see
+     * {@link #update(double)}. Only touches the state of the entities in
+     * that range.
+     */
+    private void plan(int begin, int end) {
+        ActorStore actors = this.actors;
+        double[] steps = this.steps;
+        actors.saveLocations(begin, end, steps);
+        for (int i = begin; i < end; ++i) {
+            if (steps[i] != 0.0 && actors.isConcurrent(i)) {
+                ((Actor) actors.get(i)).steer(this, steps[i]);
+            }
+        }
+        actors.integrate(begin, end, steps);
+    }
+
+    /**
+     * @return The time that has been simulated in this level, that is
+     *         the sum of the times passed to {@link #update(double)}.
+     */
+    public double getTime() {
+        return this.time;
+    }
+
+    /**
+     * Sets the buffer that records the state of the level after every
+     * update, see {@link RewindBuffer}.
+     *
+     * @param rewindBuffer   The buffer or {@code null}.
+     */
+    public void setRewindBuffer(RewindBuffer rewindBuffer) {
+        this.rewindBuffer = rewindBuffer;
+    }
+
+    /**
+     * @return The buffer that records the state of the level, or {@code
+     *         null} if there is none.
+     */
+    public RewindBuffer getRewindBuffer() {
+        return this.rewindBuffer;
+    }
+
+    /**
+     * Moves an entity to another location outside of an update and
+     * assigns it to the field of the new location. This must not be
+     * called while the level is updated.
+     *
+     * @param entity         An entity of the level that receives updates.
+     * @param x
+     * @param y
+     */
+    public void moveEntity(Entity entity, double x, double y) {
+        ActorStore actors = this.actors;
+        int index = actors.indexOf(entity);
+        if (index < 0) {
+            throw new IllegalArgumentException("only entities that receive updates can be moved");
+        }
+        entity.setLocation(x, y);
+        if (actors.hasLeftField(index)) {
+            int fieldX = (int) Math.round(x);
+            int fieldY = (int) Math.round(y);
+            this.removeEntityFromField(entity, actors.getFieldX(index), actors.getFieldY(index));
+            this.assignEntityToField(entity, fieldX, fieldY);
+            actors.setField(index, fieldX, fieldY);
+        }
+    }
+
+    /**
+     * Enables a simulation level of detail. Entities are classified by
+     * their distance to the player, measured in fields along the axis
+     * with the larger distance. Entities within the {@code activeRadius}
+     * are updated every tick. Entities further away are only updated
+     * every {@code reducedInterval} ticks, and entities beyond the {@code
+     * sleepRadius} are not updated until the player comes closer again.
+     * The player itself is always updated.
+     *
+     * Entities that are skipped accumulate the elapsed time and receive
+     * it with their next update, up to {@code reducedInterval} ticks
+     * worth of time. Time beyond that, as passes while an entity sleeps,
+     * is dropped.
+     *
+     * Which entities sleep is only decided every few ticks, so sleeping
+     * entities do not cost anything in most updates.
+     *
+     * @param activeRadius
+     * @param sleepRadius
+     * @param reducedInterval
+     */
+    public void setSimulationLod(int activeRadius, int sleepRadius, int reducedInterval) {
+        if (activeRadius < 0 || sleepRadius < activeRadius || reducedInterval < 1) {
+            throw new IllegalArgumentException("invalid simulation level of detail");
+        }
+        this.lod = true;
+        this.lodActiveRadius = activeRadius;
+        this.lodSleepRadius = sleepRadius;
+        this.lodReducedInterval = reducedInterval;
+        this.lodTicksSinceSweep = LOD_SWEEP_TICKS;
+    }
+
+    /**
+     * Disables the simulation level of detail and wakes up all sleeping
+     * entities. Every entity is updated every tick again.
+     */
+    public void clearSimulationLod() {
+        this.lod = false;
+        ActorStore actors = this.actors;
+        while (actors.getAwakeCount() < actors.size()) {
+            actors.wake(actors.getAwakeCount(), this.time);
+        }
+        for (int i = 0; i < actors.size(); ++i) {
+            actors.setElapsed(i, 0.0);
+        }
+    }
+
+    /**
+     * @param index          The index of an entity in the actor store.
+     * @return The distance of the entity's field to the player's field.
+     */
+    private int getLodDistance(int index) {
+        Player player = this.player;
+        if (player == null) {
+            return 0;
+        }
+        int playerIndex = this.actors.indexOf(player);
+        if (playerIndex < 0) {
+            return 0;
+        }
+        ActorStore actors = this.actors;
+        int dx = Math.abs(actors.getFieldX(index) - actors.getFieldX(playerIndex));
+        int dy = Math.abs(actors.getFieldY(index) - actors.getFieldY(playerIndex));
+        return Math.max(dx, dy);
+    }
+
+    /**
+     * Puts the entities beyond the sleep radius to sleep and wakes up
+     * those that are within it.
+     */
+    private void sweepSleepingEntities() {
+        ActorStore actors = this.actors;
+        int index = 0;
+        while (index < actors.size()) {
+            boolean far = this.getLodDistance(index) > this.lodSleepRadius;
+            if (index < actors.getAwakeCount()) {
+                if (far) {
+                    // Another awake entity takes this index.
+                    actors.sleep(index, this.time);
+                    continue;
+                }
+            }
+            else if (!far) {
+                actors.wake(index, this.time);
+            }
+            ++index;
+        }
+    }
+
+    /**
+     * @param index          The index of an awake entity.
+     * @param deltaTime
+     * @return The time to update the entity at the specified index with
+     *         in the current tick, or zero to skip it.
+     */
+    private double getLodStep(int index, double deltaTime) {
+        ActorStore actors = this.actors;
+        boolean active = this.getLodDistance(index) <= this.lodActiveRadius;
+        double elapsed = actors.getElapsed(index);
+        if (active && elapsed == 0.0) {
+            return deltaTime;
+        }
+        elapsed += deltaTime;
+
+        // Spread the entities over the ticks by their id.
+        int interval = this.lodReducedInterval;
+        if (!active && (this.ticks + actors.get(index).getId()) % interval != 0) {
+            actors.setElapsed(index, elapsed);
+            return 0.0;
+        }
+        actors.setElapsed(index, 0.0);
+        return Math.min(elapsed, interval * deltaTime);
+    }
+
+    /**
+     * @return The seed the level's random numbers were created with.
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Returns the random number generator of the level. Two levels with
+     * the same seed and content produce the same numbers if they are used
+     * in the same order, so all randomness of a level must come from here
+     * to make runs reproducible. The generator must only be used by the
+     * thread that updates the level. Entities that need random numbers
+     * while they are updated should take their own generator from {@link
+     * #splitRandom()} instead.
+     *
+     * @return The random number generator of the level.
+     */
+    public java.util.SplittableRandom getRandom() {
+        return this.random;
+    }
+
+    /**
+     * Creates a new random number generator that is derived from the
+     * level's generator, see {@link java.util.SplittableRandom#split()}.
+     * Entities call this when they are added to the level, so their
+     * numbers only depend on the seed and the order the entities were
+     * added in, and not on the order they are updated in.
+     *
+     * @return A new random number generator.
+     */
+    public java.util.SplittableRandom splitRandom() {
+        return this.random.split();
+    }
+
+    /**
+     * Enables or disables parallel updates, see {@link #update(double)}.
+     * Parallel updates are disabled by default.
+     *
+     * @param parallelUpdates
+     */
+    public void setParallelUpdates(boolean parallelUpdates) {
+        this.parallelUpdates = parallelUpdates;
+    }
+
+    /**
+     * @return {@code true} if parallel updates are enabled.
+     */
+    public boolean isParallelUpdates() {
+        return this.parallelUpdates;
     }
 
     /**
@@ -171,6 +643,8 @@ public class Level {
             // now removed, we'll just pull it from the added queue again.
             if (this.addedEntities.remove(entity)) {
                 entity.onRemove(this);
+                this.releaseId(entity.getId());
+                entity.setId(-1);
             }
             return false;
         }
@@ -182,6 +656,10 @@ public class Level {
      * Adds the specified {@link Entity} to the level. This entity will not
      * be added immediately but queued for adding.
      *
+     * Entities that can be represented by a {@link Tile} are not kept
+     * but stored in the tile layer when the changes are committed. They
+     * will never be alive.
+     *
      * @param entity         The entity to add.
      * @return {@code true} when the entity was already part of the level,
      *         false if not.
@@ -198,26 +676,44 @@ public class Level {
             }
             return false;
         }
+        if (this.addedEntities.contains(entity)) {
+            return false;
+        }
+
+        // The entity sets look up entities by their id, thus it is
+        // assigned when the entity is queued.
+        if (entity.getId() >= 0) {
+            throw new IllegalArgumentException("Entity is part of another Level");
+        }
+        entity.setId(this.acquireId());
         this.addedEntities.add(entity);
         return true;
     }
 
     /**
+     * Note that static level geometry is stored in the tile layer and
+     * will not be returned by this method, use {@link #getTileAt(int,
+     * int)} instead. The entity of a {@link Tile} is shared by all
+     * fields and levels and must not be modified.
+     *
+     * The returned list is the one the level stores the entities of the
+     * field in, it must not be modified and only stays valid until the
+     * level is updated or changes are committed.
+     *
      * @param pos            The coordinate to get the entities for.
      * @return The {@link EntityList} at the specified coordinate. {@code
      *         null} is returned if the coordinate is out of bounds.
      */
     public EntityList getEntitiesAt(Point pos) {
-        boolean valid = pos.x >= 0 && pos.x < this.size.x &&
-                        pos.y >= 0 && pos.y < this.size.y;
-        if (valid) {
-            return this.fields[pos.x][pos.y];
-        }
-        return null;
+        return this.getEntitiesAt(pos.x, pos.y);
     }
 
     public EntityList getEntitiesAt(int x, int y) {
-        return this.getEntitiesAt(new Point(x, y));
+        if (x < 0 || x >= this.size.x || y < 0 || y >= this.size.y) {
+            return null;
+        }
+        EntityList list = this.getField(x, y);
+        return list == null ? EMPTY_FIELD : list;
     }
 
     /**
@@ -226,23 +722,25 @@ public class Level {
      *         there is no entity at this position.
      */
     public Entity getEntityAt(Point pos) {
-        EntityList list = this.getEntitiesAt(pos);
-        if (list == null || list.isEmpty()) {
+        return this.getEntityAt(pos.x, pos.y);
+    }
+
+    public Entity getEntityAt(int x, int y) {
+        if (x < 0 || x >= this.size.x || y < 0 || y >= this.size.y) {
             return null;
         }
-        java.util.Iterator<Entity> it = list.iterator();
-        Entity result;
-        for (result = it.next(); it.hasNext();) {
-            Entity curr = it.next();
-            if (curr.getZDepth() > result.getZDepth()) {
-                result = curr;
-            }
+        Entity tile = this.getTileAt(x, y).getEntity();
+        int slot = this.fieldSlots.get(Point.pack(x, y));
+        Entity top = (slot < 0 ? null : this.slotTops[slot]);
+        if (top == null) {
+            return tile;
         }
-        return result;
-    }
 
-    public Entity getEntityAt(int x, int y) {
-        return this.getEntityAt(new Point(x, y));
+        // Dynamic entities are rendered atop of the tile they stand on.
+        if (tile != null && tile.getZDepth() > top.getZDepth()) {
+            return tile;
+        }
+        return top;
     }
 
     /**
@@ -251,16 +749,7 @@ public class Level {
      *         position, {@code false} if not.
      */
     public boolean isSolidAt(Point pos) {
-        EntityList list = this.getEntitiesAt(pos);
-        if (list == null || list.isEmpty()) {
-            return false;
-        }
-        for (Entity entity : list) {
-            if (entity.isSolid()) {
-                return true;
-            }
-        }
-        return false;
+        return this.isSolidAt(pos.x, pos.y);
     }
 
     /**
@@ -269,35 +758,130 @@ public class Level {
      * @return
      */
     public boolean isSolidAt(int x, int y) {
-        return this.isSolidAt(new Point(x, y));
+        if (x < 0 || x >= this.size.x || y < 0 || y >= this.size.y) {
+            return false;
+        }
+        Chunk chunk = this.getChunk(x, y, false);
+        if (chunk == null) {
+            return false;
+        }
+        int index = Level.localIndex(x, y);
+        return (chunk.solid[index >> 6] & (1L << index)) != 0;
     }
 
     /**
-     * @param cls            The class to search for.
-     * @return A set of entities by class.
+     * @param pos            The coordinate to get the tile for.
+     * @return The {@link Tile} at the specified coordinate, or {@code
+     *         null} if the coordinate is out of bounds.
      */
-    public EntityList getEntitiesByClass(java.lang.Class<? extends Entity> cls) {
-        EntityList result = new EntityList();
-        for (Entity entity : this.entities) {
-            if (cls.isAssignableFrom(entity.getClass())) {
-                result.add(entity);
+    public Tile getTileAt(Point pos) {
+        return this.getTileAt(pos.x, pos.y);
+    }
+
+    public Tile getTileAt(int x, int y) {
+        if (x < 0 || x >= this.size.x || y < 0 || y >= this.size.y) {
+            return null;
+        }
+        Chunk chunk = this.getChunk(x, y, false);
+        if (chunk == null) {
+            return Tile.Empty;
+        }
+        return Tile.fromByte(chunk.tiles[Level.localIndex(x, y)]);
+    }
+
+    /**
+     * Changes the {@link Tile} at the specified coordinate.
+     *
+     * @param pos            The coordinate of the tile.
+     * @param tile           The new tile. Pass {@link Tile#Empty} to
+     *                       clear the field.
+     */
+    public void setTileAt(Point pos, Tile tile) {
+        this.setTileAt(pos.x, pos.y, tile);
+    }
+
+    public void setTileAt(int x, int y, Tile tile) {
+        if (tile == null) {
+            throw new IllegalArgumentException("can not set null Tile");
+        }
+        if (x < 0 || x >= this.size.x || y < 0 || y >= this.size.y) {
+            throw new IndexOutOfBoundsException(new Point(x, y).toString());
+        }
+        Chunk chunk = this.getChunk(x, y, tile != Tile.Empty);
+        if (chunk != null) {
+            chunk.tiles[Level.localIndex(x, y)] = tile.toByte();
+            this.updateSolidity(x, y);
+        }
+    }
+
+    /**
+     * @param tile           The tile type to search for.
+     * @return A list of the coordinates of all tiles of the specified type.
+     */
+    public java.util.List<Point> getTilePositions(Tile tile) {
+        java.util.List<Point> result = new java.util.ArrayList<>();
+        byte value = tile.toByte();
+        for (int i = 0; i < this.chunks.length; ++i) {
+            Chunk chunk = this.chunks[i];
+            if (chunk == null) {
+                continue;
+            }
+            int baseX = (i % this.chunksX) << CHUNK_BITS;
+            int baseY = (i / this.chunksX) << CHUNK_BITS;
+            for (int index = 0; index < chunk.tiles.length; ++index) {
+                if (chunk.tiles[index] == value) {
+                    result.add(new Point(
+                            baseX + (index & CHUNK_MASK),
+                            baseY + (index >> CHUNK_BITS)));
+                }
             }
         }
         return result;
     }
 
+    /**
+     * Note that static level geometry is stored in the tile layer and
+     * will not be returned by this method, use {@link
+     * #getTilePositions(Tile)} instead.
+     *
+     * The entities are ordered by their exact class, in the order the
+     * first entity of each class was added to the level, and then in the
+     * order they were added. The result is created once per class and
+     * reflects later changes to the level, so it must not be iterated
+     * while the level is updated. Copy it to keep the current entities.
+     *
+     * @param cls            The class to search for.
+     * @return A read-only view of the entities that are instances of the
+     *         specified class.
+     */
+    public java.util.List<Entity> getEntitiesByClass(java.lang.Class<? extends Entity> cls) {
+        ClassView view = this.classViews.get(cls);
+        if (view == null) {
+            view = new ClassView();
+            for (java.util.Map.Entry<Class<? extends Entity>, EntityList> entry
+                    : this.entitiesByClass.entrySet()) {
+                if (cls.isAssignableFrom(entry.getKey())) {
+                    view.lists.add(entry.getValue());
+                }
+            }
+            this.classViews.put(cls, view);
+        }
+        return view;
+    }
+
     /**
      * @return The {@link Player} entity, or {@code null}.
      */
     public Player getPlayer() {
-        EntityList list = this.getEntitiesByClass(Player.class);
-        if (list.isEmpty()) {
-            return null;
-        }
-        else if (list.size() > 1) {
-            System.err.println("WARNING: Multiple Player entities found.");
-        }
-        return (Player) list.get(0);
+        return this.player;
+    }
+
+    /**
+     * @return The number of {@link Key} entities that are still part of
+     *         the level.
+     */
+    public int getRemainingKeys() {
+        return this.remainingKeys;
     }
 
     /**
@@ -317,140 +901,279 @@ public class Level {
         this.entities.removeAll(this.removedEntities);
 
         for (Entity entity : this.addedEntities) {
-            this.assignEntityToField(entity);
+            Point pos = entity.getLocation().toPoint();
+            Tile tile = Tile.forEntity(entity);
+            if (tile != null) {
+                this.entities.remove(entity);
+                this.releasedEntities.add(entity);
+                if (this.size.contains(pos)) {
+                    this.setTileAt(pos, tile);
+                }
+                continue;
+            }
+            if (entity.receivesUpdates()) {
+                this.actors.add(entity, pos.x, pos.y);
+            }
+            this.assignEntityToField(entity, pos.x, pos.y);
+            this.addEntityToIndex(entity);
             entity.onAdd(this);
         }
         for (Entity entity : this.removedEntities) {
             entity.onRemove(this);
-            this.removeEntityFromField(entity);
+
+            // Entities that receive updates may have moved since they
+            // were assigned to their field.
+            int index = this.actors.indexOf(entity);
+            if (index >= 0) {
+                this.removeEntityFromField(entity,
+                        this.actors.getFieldX(index), this.actors.getFieldY(index));
+                this.actors.remove(entity);
+            }
+            else {
+                Point pos = entity.getLocation().toPoint();
+                this.removeEntityFromField(entity, pos.x, pos.y);
+            }
+            this.removeEntityFromIndex(entity);
+            this.releasedEntities.add(entity);
         }
 
         this.addedEntities.clear();
         this.removedEntities.clear();
+
+        // The ids can only be released after the entities have been
+        // removed from all sets.
+        for (Entity entity : this.releasedEntities) {
+            this.releaseId(entity.getId());
+            entity.setId(-1);
+        }
+        this.releasedEntities.clear();
     }
 
     // ----------------------------------------------------------------------
 
-    private void assignEntityToField(Entity entity) {
-        Point pos = entity.location.toPoint();
-        boolean contained = (
-                pos.x >= 0 && pos.x < this.size.x &&
-                pos.y >= 0 && pos.y < this.size.y);
-        if (contained) {
-            this.fields[pos.x][pos.y].add(entity);
-        }
+    /**
+     * @return The index of the field at the specified coordinate inside
+     *         of its {@link Chunk}.
+     */
+    private static int localIndex(int x, int y) {
+        return (x & CHUNK_MASK) | ((y & CHUNK_MASK) << CHUNK_BITS);
     }
 
-    private void removeEntityFromField(Entity entity) {
-        Point pos = entity.location.toPoint();
-        boolean contained = (
-                pos.x >= 0 && pos.x < this.size.x &&
-                pos.y >= 0 && pos.y < this.size.y);
-        if (contained) {
-            this.fields[pos.x][pos.y].remove(entity);
+    /**
+     * Returns the {@link Chunk} that contains the specified coordinate.
+     * The coordinate must be inside the level bounds.
+     *
+     * @param create         If {@code true}, the chunk is allocated if
+     *                       it does not exist yet.
+     * @return The chunk, or {@code null} if it does not exist and {@code
+     *         create} is {@code false}.
+     */
+    private Chunk getChunk(int x, int y, boolean create) {
+        int index = (x >> CHUNK_BITS) + (y >> CHUNK_BITS) * this.chunksX;
+        Chunk chunk = this.chunks[index];
+        if (chunk == null && create) {
+            chunk = new Chunk();
+            this.chunks[index] = chunk;
         }
+        return chunk;
     }
 
     /**
-     * Reads the Level from a Properties object.
+     * Returns the list of dynamic entities at the specified coordinate.
+     * The coordinate must be inside the level bounds.
      *
-     * @throws DataFormatException If the level data is invalid.
-     */
-    public static Level readFromProperties(java.util.Properties props)
-        throws DataFormatException
-    {
-        // Read in the Width and Height properties and convert them directly
-        // to integers. If the conversion fails, the property value must
-        // either be invalid or non-existent.
-        int width, height;
-        try {
-            width  = Integer.parseInt(props.getProperty("Width"));
-            height = Integer.parseInt(props.getProperty("Height"));
-            if (width <= 0 || height <= 0)
-                throw new NumberFormatException();
-        }
-        catch (NumberFormatException e) {
-            throw new DataFormatException("Invalid Width and/or Height.");
-        }
-
-        // Check if there is a player saved with this level.
-        Player player = null;
-        String playerData = props.getProperty("Player");
-        if (playerData != null) {
-            try {
-                player = Player.load(playerData);
-            }
-            catch (DataFormatException e) {
-                throw new DataFormatException("invalid Player data: " + e.getMessage());
+     * @return The list, or {@code null} if the field contains no
+     *         dynamic entities.
+     */
+    private EntityList getField(int x, int y) {
+        int slot = this.fieldSlots.get(Point.pack(x, y));
+        return (slot < 0 ? null : this.slotFields[slot]);
+    }
+
+    /**
+     * @return The slot of the field at the specified coordinate. A new
+     *         slot is assigned if the field had none yet.
+     */
+    private int acquireSlot(int x, int y) {
+        long key = Point.pack(x, y);
+        int slot = this.fieldSlots.get(key);
+        if (slot >= 0) {
+            return slot;
+        }
+        if (this.freeSlotCount > 0) {
+            slot = this.freeSlots[--this.freeSlotCount];
+        }
+        else {
+            slot = this.slotCount++;
+            if (slot >= this.slotFields.length) {
+                int capacity = this.slotFields.length * 2;
+                this.slotFields = java.util.Arrays.copyOf(this.slotFields, capacity);
+                this.slotTops = java.util.Arrays.copyOf(this.slotTops, capacity);
+                this.freeSlots = java.util.Arrays.copyOf(this.freeSlots, capacity);
             }
+            this.slotFields[slot] = new EntityList(2);
         }
+        this.fieldSlots.put(key, slot);
+        return slot;
+    }
 
-        // Create the new Level object and fill it with the data
-        // from the Properties object.
-        Level level = new Level(new Point(width, height));
-        for (int x = 0; x < width; ++x) {
-            for (int y = 0; y < height; ++y) {
-                // Construct the property key for the current field
-                // and read the property value.
-                String key = String.format("%d,%d", x, y);
-                String value = props.getProperty(key);
-                if (value == null || value.isEmpty())
-                    continue;
+    /**
+     * Releases the slot of an empty field so it can be reused.
+     */
+    private void releaseSlot(int x, int y, int slot) {
+        this.fieldSlots.remove(Point.pack(x, y));
+        this.slotTops[slot] = null;
+        this.freeSlots[this.freeSlotCount++] = slot;
+    }
 
-                // Parse the property value into a number.
-                int entityType;
-                try {
-                    entityType = Integer.parseInt(value);
-                }
-                catch (NumberFormatException e) {
-                    throw new DataFormatException("'%s' is invalid", key);
-                }
+    private int acquireId() {
+        if (this.freeIdCount > 0) {
+            return this.freeIds[--this.freeIdCount];
+        }
+        return this.nextId++;
+    }
 
-                // Translate the parsed entityType to an enumeration value.
-                Entity entity = null;
-                switch (entityType) {
-                    case 0:
-                        entity = new Wall();
-                        break;
-                    case 1:
-                        entity = new Entrance();
-                        break;
-                    case 2:
-                        entity = new Exit();
-                        break;
-                    case 3:
-                        entity = new StaticThreat();
-                        break;
-                    case 4:
-                        entity = new Enemy();
-                        break;
-                    case 5:
-                        entity = new Key();
-                        break;
-                    default:
-                        throw new DataFormatException(
-                                "Unknown Entity type at '%s'", key);
+    private void releaseId(int id) {
+        if (this.freeIdCount == this.freeIds.length) {
+            this.freeIds = java.util.Arrays.copyOf(this.freeIds, this.freeIdCount * 2);
+        }
+        this.freeIds[this.freeIdCount++] = id;
+    }
+
+    private void addEntityToIndex(Entity entity) {
+        EntityList list = this.entitiesByClass.get(entity.getClass());
+        if (list == null) {
+            list = new EntityList();
+            this.entitiesByClass.put(entity.getClass(), list);
+            for (java.util.Map.Entry<Class<? extends Entity>, ClassView> entry
+                    : this.classViews.entrySet()) {
+                if (entry.getKey().isAssignableFrom(entity.getClass())) {
+                    entry.getValue().lists.add(list);
                 }
+            }
+        }
+        list.add(entity);
 
-                if (entity != null) {
-                    entity.location = new Location(x, y);
-                    level.addEntity(entity);
+        for (Class<? extends Event> type : entity.getEventTypes()) {
+            IdEntitySet set = this.subscribers.get(type);
+            if (set == null) {
+                set = new IdEntitySet();
+                this.subscribers.put(type, set);
+            }
+            set.add(entity);
+        }
+
+        if (entity instanceof Key) {
+            this.remainingKeys += 1;
+        }
+        else if (entity instanceof Player) {
+            if (this.player != null) {
+                System.err.println("WARNING: Multiple Player entities found.");
+            }
+            else {
+                this.player = (Player) entity;
+            }
+        }
+    }
+
+    private void removeEntityFromIndex(Entity entity) {
+        EntityList list = this.entitiesByClass.get(entity.getClass());
+        if (list != null) {
+            list.remove(entity);
+        }
+        for (Class<? extends Event> type : entity.getEventTypes()) {
+            IdEntitySet set = this.subscribers.get(type);
+            if (set != null) {
+                set.remove(entity);
+            }
+        }
+
+        if (entity instanceof Key) {
+            this.remainingKeys -= 1;
+        }
+        else if (entity == this.player) {
+            // Fall back to another Player if there are multiple.
+            java.util.List<Entity> players = this.getEntitiesByClass(Player.class);
+            this.player = players.isEmpty() ? null : (Player) players.get(0);
+        }
+    }
+
+    /**
+     * Recomputes the solidity bit of the field at the specified
+     * coordinate. The coordinate must be inside the level bounds.
+     */
+    private void updateSolidity(int x, int y) {
+        boolean solid = this.getTileAt(x, y).isSolid();
+        EntityList list = this.getField(x, y);
+        if (!solid && list != null) {
+            for (Entity entity : list) {
+                if (entity.isSolid()) {
+                    solid = true;
+                    break;
                 }
             }
         }
 
-        level.commitChanges();
+        // A solid entity may enter a field with no tile chunk yet.
+        Chunk chunk = this.getChunk(x, y, solid);
+        if (chunk == null) {
+            return;
+        }
+        int index = Level.localIndex(x, y);
+        if (solid) {
+            chunk.solid[index >> 6] |= (1L << index);
+        }
+        else {
+            chunk.solid[index >> 6] &= ~(1L << index);
+        }
+    }
 
-        // Make sure the player would not be placed on a solid entity.
-        if (player != null) {
-            if (level.isSolidAt(player.location.toPoint())) {
-                throw new DataFormatException(
-                        "Player location is occupied with solid entity");
+    private void assignEntityToField(Entity entity, int x, int y) {
+        if (x < 0 || x >= this.size.x || y < 0 || y >= this.size.y) {
+            return;
+        }
+        int slot = this.acquireSlot(x, y);
+        this.slotFields[slot].add(entity);
+        if (entity.isSolid()) {
+            this.updateSolidity(x, y);
+        }
+
+        // The first entity with the highest z-depth stays on top.
+        Entity top = this.slotTops[slot];
+        if (top == null || entity.getZDepth() > top.getZDepth()) {
+            this.slotTops[slot] = entity;
+        }
+    }
+
+    private void removeEntityFromField(Entity entity, int x, int y) {
+        if (x < 0 || x >= this.size.x || y < 0 || y >= this.size.y) {
+            return;
+        }
+        int slot = this.fieldSlots.get(Point.pack(x, y));
+        if (slot < 0) {
+            return;
+        }
+        EntityList list = this.slotFields[slot];
+        if (!list.remove(entity)) {
+            return;
+        }
+        if (list.isEmpty()) {
+            this.releaseSlot(x, y, slot);
+        }
+        if (entity.isSolid()) {
+            this.updateSolidity(x, y);
+        }
+
+        // Find the new top entity if the removed one was on top.
+        if (this.slotTops[slot] == entity) {
+            Entity top = null;
+            for (Entity curr : list) {
+                if (top == null || curr.getZDepth() > top.getZDepth()) {
+                    top = curr;
+                }
             }
-            level.addEntity(player);
-            level.commitChanges();
+            this.slotTops[slot] = top;
         }
-        return level;
     }
 
 }
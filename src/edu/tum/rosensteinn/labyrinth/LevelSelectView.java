@@ -25,6 +25,7 @@ package edu.tum.rosensteinn.labyrinth;
 import java.io.File;
 import edu.tum.rosensteinn.labyrinth.gui.*;
 import edu.tum.rosensteinn.labyrinth.gui.widget.*;
+import edu.tum.rosensteinn.labyrinth.replay.ReplayWriter;
 
 /**
  * Displays all {@code .properties} files in a directory and tries to
@@ -71,7 +72,8 @@ public class LevelSelectView extends WidgetView {
             Main.showError(window, e.getMessage());
             return;
         }
-        LevelView view = new LevelView(this.getBack(), this.getRoot().getStyling(), level);
+        ReplayWriter replay = Main.startReplay(file, level);
+        LevelView view = new LevelView(this.getBack(), this.getRoot().getStyling(), level, replay);
         window.pushView(view);
     }
 
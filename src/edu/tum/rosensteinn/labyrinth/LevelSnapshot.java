@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth;
+
+import edu.tum.rosensteinn.labyrinth.entity.Entity;
+import edu.tum.rosensteinn.labyrinth.entity.EntityList;
+import edu.tum.rosensteinn.labyrinth.entity.Player;
+
+import com.googlecode.lanterna.terminal.Terminal;
+
+/**
+ * A copy of everything that is required to render a {@link Level} around
+ * the player: the visible cells of the viewport and the state displayed in
+ * the status bar. Snapshots are captured by the simulation and read by the
+ * render thread, see {@link LevelView}. They are reused, so the arrays only
+ * grow when the viewport does.
+ */
+public final class LevelSnapshot {
+
+    private boolean valid = false;
+    private int width = 0;
+    private int height = 0;
+    private char[] chars = new char[0];
+    private Terminal.Color[] fg = new Terminal.Color[0];
+    private Terminal.Color[] bg = new Terminal.Color[0];
+    private int lives = 0;
+    private int keysTotal = 0;
+    private char[] keyChars = new char[0];
+    private boolean[] keysCollected = new boolean[0];
+
+    /**
+     * Copies the visible part of the {@code level} into this snapshot. The
+     * viewport is centered at the player.
+     *
+     * @param level
+     * @param keys    The list of keys of the level.
+     * @param width   The width of the viewport.
+     * @param height  The height of the viewport.
+     */
+    public void capture(Level level, EntityList keys, int width, int height) {
+        Player player = level.getPlayer();
+        if (player == null || width <= 0 || height <= 0) {
+            this.valid = false;
+            return;
+        }
+
+        int count = width * height;
+        if (this.chars.length < count) {
+            this.chars = new char[count];
+            this.fg = new Terminal.Color[count];
+            this.bg = new Terminal.Color[count];
+        }
+        this.width = width;
+        this.height = height;
+
+        Point playerPos = player.getLocation().toPoint();
+        int offsetX = playerPos.x - width / 2;
+        int offsetY = playerPos.y - height / 2;
+        int index = 0;
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x, ++index) {
+                Entity entity = level.getEntityAt(x + offsetX, y + offsetY);
+                if (entity == null) {
+                    this.chars[index] = ' ';
+                    this.fg[index] = Terminal.Color.DEFAULT;
+                    this.bg[index] = Terminal.Color.BLACK;
+                }
+                else {
+                    Entity.Visual v = entity.getVisual();
+                    this.chars[index] = v.c;
+                    this.fg[index] = v.fg;
+                    this.bg[index] = v.bg;
+                }
+            }
+        }
+
+        this.lives = player.lives;
+        this.keysTotal = keys.size();
+        if (this.keyChars.length < this.keysTotal) {
+            this.keyChars = new char[this.keysTotal];
+            this.keysCollected = new boolean[this.keysTotal];
+        }
+        for (int i = 0; i < this.keysTotal; ++i) {
+            Entity key = keys.get(i);
+            this.keyChars[i] = key.getVisual().c;
+            this.keysCollected[i] = !key.isAlive();
+        }
+        this.valid = true;
+    }
+
+    /**
+     * @return {@code false} if nothing has been captured yet or the level
+     *         had no player at the time of the capture.
+     */
+    public boolean isValid() {
+        return this.valid;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public char getCharacter(int x, int y) {
+        return this.chars[y * this.width + x];
+    }
+
+    public Terminal.Color getForegroundColor(int x, int y) {
+        return this.fg[y * this.width + x];
+    }
+
+    public Terminal.Color getBackgroundColor(int x, int y) {
+        return this.bg[y * this.width + x];
+    }
+
+    public int getLives() {
+        return this.lives;
+    }
+
+    public int getKeysTotal() {
+        return this.keysTotal;
+    }
+
+    public char getKeyCharacter(int index) {
+        return this.keyChars[index];
+    }
+
+    public boolean isKeyCollected(int index) {
+        return this.keysCollected[index];
+    }
+
+}
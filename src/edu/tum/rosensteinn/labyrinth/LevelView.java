@@ -25,6 +25,9 @@ package edu.tum.rosensteinn.labyrinth;
 import edu.tum.rosensteinn.labyrinth.gui.*;
 import edu.tum.rosensteinn.labyrinth.gui.widget.*;
 import edu.tum.rosensteinn.labyrinth.entity.*;
+import edu.tum.rosensteinn.labyrinth.tools.FixedTimestep;
+import edu.tum.rosensteinn.labyrinth.tools.TripleBuffer;
+import edu.tum.rosensteinn.labyrinth.replay.ReplayWriter;
 
 import com.googlecode.lanterna.input.Key;
 import com.googlecode.lanterna.terminal.Terminal;
@@ -32,36 +35,83 @@ import com.googlecode.lanterna.terminal.Terminal;
 /**
  * This class renders the level, opens the pause menu when ESC is pressed
  * and forwards events to the level entities.
+ *
+ * The level is only accessed by the thread that dispatches the events.
+ * After each simulation step the visible part of the level is captured
+ * into a {@link LevelSnapshot} which is published to the render thread,
+ * so the view can be rendered while the simulation continues.
  */
 public class LevelView extends View {
 
-    private long lastUpdate;
+    private final FixedTimestep timestep;
     private final Styling styling;
     private final Level level;
     private final View mainView;
     private final PauseView pauseView;
     private final Player player;
     private final EntityList keys;
+    private final ReplayWriter replay;
+    private final RewindBuffer rewindBuffer;
+    private final TripleBuffer<LevelSnapshot> snapshots;
+
+    // The size of the viewport as seen by the render thread.
+    private volatile Point viewportSize = new Point(0, 0);
 
     public LevelView(View mainView, Styling styling, Level level) {
+        this(mainView, styling, level, null);
+    }
+
+    /**
+     * @param mainView
+     * @param styling
+     * @param level
+     * @param replay         Records the input and ticks of the level, or
+     *                       {@code null} if no replay is recorded.
+     */
+    public LevelView(View mainView, Styling styling, Level level, ReplayWriter replay) {
         super();
         this.styling = styling;
         this.level = level;
         this.mainView = mainView;
-        this.pauseView = new PauseView(mainView, styling, level);
-        this.lastUpdate = -1;
+        this.replay = replay;
+        this.rewindBuffer = Main.createRewindBuffer(level);
+        this.pauseView = new PauseView(mainView, styling, level, replay);
+        this.timestep = new FixedTimestep(Main.tickRate, Main.maxTicksPerFrame);
         this.player = level.getPlayer();
-        this.keys = level.getEntitiesByClass(edu.tum.rosensteinn.labyrinth.entity.Key.class);
+        this.keys = new EntityList(
+                level.getEntitiesByClass(edu.tum.rosensteinn.labyrinth.entity.Key.class));
+        this.snapshots = new TripleBuffer<>(LevelSnapshot::new);
     }
 
+    /**
+     * Runs as many fixed length simulation ticks as fit into the time
+     * that passed since the last call, independent of the rate at which
+     * the view is rendered.
+     */
     private void update() {
-        double deltaTime = 0.0;
-        long curr = System.currentTimeMillis();
-        if (this.lastUpdate > 0) {
-            deltaTime = (double) (curr - this.lastUpdate) / 1000.0;
+        int ticks = this.timestep.advance();
+        double deltaTime = this.timestep.getDeltaTime();
+        for (int i = 0; i < ticks; ++i) {
+            if (this.replay != null) {
+                this.replay.tick(deltaTime);
+            }
+            this.level.update(deltaTime);
+            Player player = this.level.getPlayer();
+            if (player == null || player.lives <= 0 || player.won) {
+                break;
+            }
         }
-        this.lastUpdate = curr;
-        this.level.update(deltaTime);
+    }
+
+    /**
+     * Captures the visible part of the level and publishes it for the
+     * render thread.
+     */
+    private void publishSnapshot() {
+        Point size = this.viewportSize;
+        LevelSnapshot snapshot = this.snapshots.getBack();
+        snapshot.capture(this.level, this.keys, size.x, size.y);
+        this.snapshots.publish();
     }
 
     @Override
@@ -72,6 +122,16 @@ public class LevelView extends View {
             Main.showError(window, "Invalid level: contains\nno Player Entity!");
             return;
         }
+        Point screenSize = window.getScreen().getSize();
+        this.viewportSize = new Point(screenSize.x, screenSize.y - 1);
+    }
+
+    @Override
+    public void onClose(Window window) {
+        // Write out the ticks that are still buffered.
+        if (this.replay != null) {
+            this.replay.close();
+        }
     }
 
     @Override
@@ -80,15 +140,31 @@ public class LevelView extends View {
             Key key = ((KeyboardEvent) event).key;
             if (key.getKind() == Key.Kind.Escape) {
                 window.pushView(this.pauseView);
-                this.lastUpdate = -1;
+                this.timestep.reset();
+                if (this.replay != null) {
+                    this.replay.flush();
+                }
             }
             else {
-                this.level.event(event);
+                if (Main.isRewindKey(key)) {
+                    if (this.rewindBuffer != null) {
+                        this.rewindBuffer.rewind(Main.rewindStep);
+                    }
+                }
+                else {
+                    this.level.event(event);
+                }
+                if (this.replay != null) {
+                    this.replay.addKey(key);
+                }
             }
         }
         else if (event instanceof ReocurringEvent) {
             this.update();
             Player player = this.level.getPlayer();
+            if (this.replay != null && (player == null || player.lives <= 0 || player.won)) {
+                this.replay.close();
+            }
             if (player == null || player.lives <= 0) {
                 window.setView(this.mainView);
                 Main.showInfo(window, "    Game Over.    ");
@@ -99,14 +175,32 @@ public class LevelView extends View {
                 Main.showInfo(window, "   Congratulations!   ");
                 return;
             }
+            this.publishSnapshot();
         }
     }
 
+    @Override
+    public boolean isRenderedConcurrently() {
+        return true;
+    }
+
     @Override
     public void render(Window window, boolean initial) {
         Screen screen = window.getScreen();
         Point screenSize = screen.getSize();
 
+        // Let the simulation know which area to capture for the next
+        // frame. The top line is used for the status bar.
+        Point viewportSize = this.viewportSize;
+        if (viewportSize.x != screenSize.x || viewportSize.y != screenSize.y - 1) {
+            this.viewportSize = new Point(screenSize.x, screenSize.y - 1);
+        }
+
+        LevelSnapshot snapshot = this.snapshots.getFront();
+        if (!snapshot.isValid()) {
+            return;
+        }
+
         // Render the health and key bar into the top line.
         screen.moveCursor(0, 0);
         screen.applyForegroundColor(Terminal.Color.BLACK);
@@ -118,55 +212,39 @@ public class LevelView extends View {
         screen.moveCursor(0, 0);
         screen.putString("Life: ");
         screen.applyForegroundColor(Terminal.Color.RED);
-        for (int i = 0; i < this.player.lives; ++i) {
+        for (int i = 0; i < snapshot.getLives(); ++i) {
             screen.putCharacter('\u2665'); // Heart
         }
 
-        int keysTotal = this.keys.size();
+        int keysTotal = snapshot.getKeysTotal();
 
         String text = "Keys: ";
         screen.moveCursor(screenSize.x - text.length() - keysTotal, 0);
         screen.applyForegroundColor(Terminal.Color.BLACK);
         screen.putString(text);
-        for (Entity key : this.keys) {
-            Entity.Visual v = key.getVisual();
-            if (key.isAlive()) {
-                screen.applyForegroundColor(Terminal.Color.BLACK);
+        for (int i = 0; i < keysTotal; ++i) {
+            if (snapshot.isKeyCollected(i)) {
+                screen.applyForegroundColor(Terminal.Color.YELLOW);
             }
             else {
-                screen.applyForegroundColor(Terminal.Color.YELLOW);
+                screen.applyForegroundColor(Terminal.Color.BLACK);
             }
-            screen.putCharacter(v.c);
+            screen.putCharacter(snapshot.getKeyCharacter(i));
         }
 
-        // Shrink the screen size by one and introduce the vertical offset.
-        screenSize = new Point(screenSize.x, screenSize.y - 1);
+        // The snapshot may have been captured before a resize, only
+        // draw the part that still fits on the screen.
+        int width = Math.min(snapshot.getWidth(), screenSize.x);
+        int height = Math.min(snapshot.getHeight(), screenSize.y - 1);
         screen.pushOffset(new Point(0, 1));
-
-        Point levelSize = this.level.getSize();
-        Point playerPos = player.location.toPoint();
-        Point levelOffset = new Point(
-                -(playerPos.x - (screenSize.x / 2)),
-                -(playerPos.y - (screenSize.y / 2)));
-
-        for (int x = 0; x < screenSize.x; ++x) {
-            for (int y = 0; y < screenSize.y; ++y) {
-                screen.moveCursor(x, y);
-                Point entityPos = new Point(x, y).sub(levelOffset);
-                Entity entity = level.getEntityAt(entityPos);
-                if (entity == null) {
-                    screen.applyBackgroundColor(Terminal.Color.BLACK);
-                    screen.putCharacter(' ');
-                }
-                else {
-                    Entity.Visual v = entity.getVisual();
-                    screen.applyForegroundColor(v.fg);
-                    screen.applyBackgroundColor(v.bg);
-                    screen.putCharacter(v.c);
-                }
+        for (int y = 0; y < height; ++y) {
+            screen.moveCursor(0, y);
+            for (int x = 0; x < width; ++x) {
+                screen.applyForegroundColor(snapshot.getForegroundColor(x, y));
+                screen.applyBackgroundColor(snapshot.getBackgroundColor(x, y));
+                screen.putCharacter(snapshot.getCharacter(x, y));
             }
         }
-
         screen.popOffset();
     }
 
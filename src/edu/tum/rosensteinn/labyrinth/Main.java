@@ -26,12 +26,68 @@ import edu.tum.rosensteinn.labyrinth.gui.*;
 import edu.tum.rosensteinn.labyrinth.gui.widget.*;
 import edu.tum.rosensteinn.labyrinth.entity.*;
 import edu.tum.rosensteinn.labyrinth.tools.FpsTimer;
+import edu.tum.rosensteinn.labyrinth.headless.BatchRunner;
+import edu.tum.rosensteinn.labyrinth.headless.ReplayRunner;
+import edu.tum.rosensteinn.labyrinth.headless.SimulationFarm;
+import edu.tum.rosensteinn.labyrinth.replay.ReplayWriter;
 import com.googlecode.lanterna.terminal.Terminal;
 
 public class Main {
 
     public static java.io.File levelsFolder = new java.io.File("./levels");
     public static java.io.File savesFolder = new java.io.File("./saves");
+    public static java.io.File replaysFolder = new java.io.File("./replays");
+
+    /**
+     * Record a replay of every level that is played, see {@link
+     * #startReplay(java.io.File, Level)}.
+     */
+    public static boolean recordReplays = true;
+
+    /**
+     * The number of simulation ticks per second of a running level.
+     */
+    public static double tickRate = 60.0;
+
+    /**
+     * The maximum number of ticks that are simulated to catch up before
+     * a frame is rendered. Time beyond that is dropped.
+     */
+    public static int maxTicksPerFrame = 5;
+
+    /**
+     * Enables parallel updates of the levels, see {@link
+     * Level#setParallelUpdates(boolean)}. Only enabled by default if more
+     * than one processor is available.
+     */
+    public static boolean parallelUpdates = Runtime.getRuntime().availableProcessors() > 1;
+
+    /**
+     * The size in bytes from which level files are mapped into memory
+     * instead of being read, see {@link #readFile(java.io.File)}.
+     */
+    public static long mapThreshold = 1024 * 1024;
+
+    /**
+     * Enables the simulation level of detail of the levels, see {@link
+     * Level#setSimulationLod(int, int, int)}. It is disabled by default
+     * because it changes how far enemies move. {@code --headless} and
+     * {@code --farm} enable it with {@code --lod}.
+     */
+    public static boolean simulationLod = false;
+    public static int lodActiveRadius = 40;
+    public static int lodSleepRadius = 120;
+    public static int lodReducedInterval = 4;
+
+    /**
+     * The number of seconds a running level can be rewound, or 0 to
+     * disable rewinding. A snapshot is taken every {@link #rewindInterval}
+     * ticks, and every press of the rewind key goes back {@link
+     * #rewindStep} seconds.
+     */
+    public static double rewindSeconds = 10.0;
+    public static int rewindInterval = 4;
+    public static double rewindStep = 1.0;
 
     public static void showInfo(Window window, String message) {
         Styling styling = new Styling();
@@ -50,34 +106,57 @@ public class Main {
     }
 
     public static Level loadLevel(java.io.File file) throws DataFormatException {
+        return Main.loadLevel(file, null);
+    }
+
+    /**
+     * Loads a level file and places a player at a random entrance if the
+     * level does not contain one yet.
+     *
+     * @param file
+     * @param seed           The seed of the level's random numbers, or
+     *                       {@code null} to use the seed saved in the file
+     *                       or a random one.
+     * @return The loaded level.
+     * @throws DataFormatException
+     */
+    public static Level loadLevel(java.io.File file, Long seed) throws DataFormatException {
         if (!file.isFile()) {
             throw new DataFormatException("'%s' does not exist.", file);
         }
 
-        // Load the properties file.
-        java.util.Properties props = new java.util.Properties();
+        // Read the level file and parse it in place, either in the binary
+        // format or as a properties file, depending on the first bytes of
+        // the file.
+        Level level = null;
         try {
-            props.load(new java.io.FileInputStream(file));
+            java.nio.ByteBuffer data = Main.readFile(file);
+            if (BinaryLevel.isBinary(data)) {
+                level = BinaryLevel.read(data, seed);
+            }
+            else {
+                level = new PropertiesLevelReader(data).read(seed);
+            }
         }
         catch (java.io.IOException e) {
-            System.err.println("Error loading Properties file:");
+            System.err.println("Error loading level file:");
             e.printStackTrace();
-            throw new DataFormatException(e.getMessage());  // todo: Implement the cause
+            throw new DataFormatException(e.getMessage(), e);
+        }
+        level.setParallelUpdates(Main.parallelUpdates);
+        if (Main.simulationLod) {
+            level.setSimulationLod(Main.lodActiveRadius, Main.lodSleepRadius, Main.lodReducedInterval);
         }
-
-        // Load the level from the properties file.
-        Level level = null;
-        level = Level.readFromProperties(props);
 
         // Create a player at a random entrance.
         if (level.getPlayer() == null) {
-            EntityList entrances = level.getEntitiesByClass(Entrance.class);
+            java.util.List<Point> entrances = level.getTilePositions(Tile.Entrance);
             if (entrances.isEmpty()) {
                 throw new DataFormatException("level contains no entrances");
             }
-            Entity entrance = entrances.get((int) (Math.random() * entrances.size()));
+            Point entrance = entrances.get(level.getRandom().nextInt(entrances.size()));
             Player player = new Player(3, null, 5);
-            player.location.copyFrom(entrance.location);
+            player.setLocation(new Location(entrance));
             level.addEntity(player);
             level.commitChanges();
         }
@@ -85,19 +164,148 @@ public class Main {
         return level;
     }
 
+    /**
+     * Creates a {@link RewindBuffer} for a level as configured by {@link
+     * #rewindSeconds} and attaches it to the level.
+     *
+     * @param level
+     * @return The buffer, or {@code null} if rewinding is disabled.
+     */
+    public static RewindBuffer createRewindBuffer(Level level) {
+        if (Main.rewindSeconds <= 0) {
+            return null;
+        }
+        int capacity = (int) Math.ceil(Main.rewindSeconds * Main.tickRate / Main.rewindInterval) + 1;
+        RewindBuffer buffer = new RewindBuffer(level, capacity, Main.rewindInterval);
+        level.setRewindBuffer(buffer);
+        return buffer;
+    }
+
+    /**
+     * @param key
+     * @return {@code true} if the key rewinds a running level.
+     */
+    public static boolean isRewindKey(com.googlecode.lanterna.input.Key key) {
+        return key.getKind() == com.googlecode.lanterna.input.Key.Kind.Backspace;
+    }
+
+    /**
+     * Reads the contents of a file. Files of at least {@link
+     * #mapThreshold} bytes are mapped into memory, so repeated loads of
+     * the same file are served from the page cache of the operating
+     * system. Smaller files are read into a heap buffer, because a mapping
+     * stays alive until it is garbage collected and on some systems the
+     * file can not be overwritten or deleted while it is mapped.
+     *
+     * @param file
+     * @return The contents of the file.
+     * @throws java.io.IOException
+     */
+    public static java.nio.ByteBuffer readFile(java.io.File file) throws java.io.IOException {
+        try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(file.toPath())) {
+            long size = channel.size();
+            if (size >= Main.mapThreshold) {
+                return channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            java.nio.ByteBuffer data = java.nio.ByteBuffer.allocate((int) size);
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // read until the buffer is full or the file ended
+            }
+            data.flip();
+            return data;
+        }
+    }
+
+    /**
+     * Starts recording a replay of a level into the {@link #replaysFolder}.
+     *
+     * @param levelFile      The file the level was loaded from.
+     * @param level          The level right after it was loaded.
+     * @return The recorder, or {@code null} if replays are disabled or the
+     *         replay file could not be created.
+     */
+    public static ReplayWriter startReplay(java.io.File levelFile, Level level) {
+        if (!Main.recordReplays) {
+            return null;
+        }
+        String name = levelFile.getName();
+        if (name.endsWith(".properties")) {
+            name = name.substring(0, name.length() - ".properties".length());
+        }
+        else if (name.endsWith(".level")) {
+            name = name.substring(0, name.length() - ".level".length());
+        }
+        String time = new java.text.SimpleDateFormat("yyyyMMdd-HHmmss").format(new java.util.Date());
+        java.io.File file = new java.io.File(Main.replaysFolder, name + "-" + time + ".replay");
+        try {
+            Main.replaysFolder.mkdirs();
+            return new ReplayWriter(file, levelFile, level);
+        }
+        catch (java.io.IOException e) {
+            System.err.println("Error creating replay file:");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     public static void main(String[] args) {
+        // Run levels without a window if requested.
+        if (args.length > 0 && args[0].equals("--headless")) {
+            BatchRunner.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        else if (args.length > 0 && args[0].equals("--farm")) {
+            SimulationFarm.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        else if (args.length > 0 && args[0].equals("--replay")) {
+            ReplayRunner.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        else if (args.length > 0 && args[0].equals("--convert")) {
+            BinaryLevel.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         // Create the Window with the MainView and initialize the
         // Terminal size.
         MainView mainView = new MainView(Styling.defaultStyling);
         Window window = new Window(mainView, 50, 30, false);
         window.open();
 
-        // Main loop limited to a certain FPS.
+        // Close the window and with it the views, eg. to finish the replay
+        // that is being recorded, also if the process is terminated.
+        Runtime.getRuntime().addShutdownHook(new Thread(window::close, "Shutdown Thread"));
+
+        // The terminal is painted by a separate thread so that slow
+        // terminal output does not hold back the simulation.
+        Thread renderThread = new Thread(() -> {
+            FpsTimer renderTimer = new FpsTimer(60);
+            while (window.isOpen()) {
+                window.redraw();
+                renderTimer.sleep();
+            }
+        }, "Render Thread");
+        renderThread.setDaemon(true);
+        renderThread.start();
+
+        // Main loop limited to a certain FPS. The level simulation runs
+        // at its own fixed rate, see LevelView.
         FpsTimer timer = new FpsTimer(60);
-        while (window.isOpen()) {
-            window.dispatchEvents();
-            window.redraw();
-            timer.sleep();
+        try {
+            while (window.isOpen()) {
+                window.dispatchEvents();
+                timer.sleep();
+            }
+        }
+        finally {
+            window.close();
+        }
+        try {
+            renderThread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
         System.out.println("Main Thread End.");
     }
@@ -24,6 +24,7 @@ package edu.tum.rosensteinn.labyrinth;
 
 import edu.tum.rosensteinn.labyrinth.gui.*;
 import edu.tum.rosensteinn.labyrinth.gui.widget.*;
+import edu.tum.rosensteinn.labyrinth.replay.ReplayWriter;
 
 import com.googlecode.lanterna.input.Key;
 
@@ -35,11 +36,24 @@ public class PauseView extends WidgetView {
 
     private final View mainView;
     private final Level level;
+    private final ReplayWriter replay;
 
     public PauseView(View mainView, Styling styling, Level level) {
+        this(mainView, styling, level, null);
+    }
+
+    /**
+     * @param mainView
+     * @param styling
+     * @param level
+     * @param replay         The replay of the level that is closed when the
+     *                       user returns to the main menu, or {@code null}.
+     */
+    public PauseView(View mainView, Styling styling, Level level, ReplayWriter replay) {
         super(styling);
         this.mainView = mainView;
         this.level = level;
+        this.replay = replay;
         this.init();
     }
 
@@ -52,7 +66,12 @@ public class PauseView extends WidgetView {
         box.addEntry("Continue", new ActionListener.PopView());
         box.addEntry("View Legend", new ActionListener.PushView(new LegendView(styling)));
         box.addEntry("Save Game", new ActionListener.PushView(new SaveView(styling, this.level)));
-        box.addEntry("Main Menu", new ActionListener.ChangeView(this.mainView));
+        box.addEntry("Main Menu", (Window window, Object source, Object data) -> {
+            if (this.replay != null) {
+                this.replay.close();
+            }
+            window.setView(this.mainView);
+        });
     }
 
     @Override
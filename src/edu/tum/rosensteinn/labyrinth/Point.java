@@ -75,6 +75,43 @@ public class Point {
         }
     }
 
+    /**
+     * @return The coordinate packed into a single {@code long}, see
+     *         {@link #pack(int, int)}.
+     */
+    public long pack() {
+        return Point.pack(this.x, this.y);
+    }
+
+    /**
+     * Packs a coordinate into a single {@code long} with the x component
+     * in the upper and the y component in the lower 32 bits. This allows
+     * using coordinates as keys without creating a {@link Point}.
+     *
+     * @param x
+     * @param y
+     * @return The packed coordinate.
+     */
+    public static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param packed         A coordinate returned by {@link #pack(int, int)}.
+     * @return The x component of the packed coordinate.
+     */
+    public static int unpackX(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    /**
+     * @param packed         A coordinate returned by {@link #pack(int, int)}.
+     * @return The y component of the packed coordinate.
+     */
+    public static int unpackY(long packed) {
+        return (int) packed;
+    }
+
     @Override
     public boolean equals(Object otherObj) {
         if (otherObj instanceof Point) {
@@ -86,7 +123,7 @@ public class Point {
 
     @Override
     public int hashCode() {
-        return (5132 << (this.x % 31)) * 5 << (this.y % 31) + this.x * this.y;
+        return 31 * this.x + this.y;
     }
 
     @Override
@@ -0,0 +1,547 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth;
+
+import edu.tum.rosensteinn.labyrinth.entity.*;
+
+/**
+ * Reads a level in the properties format in a single pass, without
+ * loading it into a {@link java.util.Properties} object first. The syntax
+ * of {@link java.util.Properties#load(java.io.InputStream)} is supported,
+ * including comments, the {@code =}, {@code :} and whitespace separators,
+ * escape sequences and line continuations, so hand-edited levels can be
+ * read as well as saved ones. As with properties, a key that appears more
+ * than once takes its last value and unknown keys are ignored.
+ *
+ * The fields are collected into a grid and the level is built once the
+ * whole file is read, because the Width and Height may appear anywhere.
+ * Fields before them are kept in a small buffer. The entities are added
+ * column by column, ie. ordered by x and then by y.
+ *
+ * The data is either streamed from a channel or parsed in place from a
+ * buffer, such as a memory-mapped file. Only the Seed and Player values
+ * are turned into Strings.
+ */
+public final class PropertiesLevelReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final java.nio.channels.ReadableByteChannel channel;
+    private final java.nio.ByteBuffer buffer;
+
+    private int line = 1;
+    private int entryLine;
+    private char[] key = new char[64];
+    private int keyLength;
+    private char[] value = new char[64];
+    private int valueLength;
+
+    private int width = -1;
+    private int height = -1;
+    private String seedData;
+    private String playerData;
+    private int playerLine;
+
+    // The fields as Tile or entity type + 1, 0 is empty.
+    private byte[] grid;
+
+    // Fields read before the Width and Height were known.
+    private int pendingCount;
+    private int[] pendingX = new int[64];
+    private int[] pendingY = new int[64];
+    private byte[] pendingType = new byte[64];
+    private int[] pendingLine = new int[64];
+
+    /**
+     * Creates a reader that reads the level from a channel.
+     *
+     * @param channel
+     */
+    public PropertiesLevelReader(java.nio.channels.ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = java.nio.ByteBuffer.allocate(BUFFER_SIZE);
+        this.buffer.flip();
+    }
+
+    /**
+     * Creates a reader that parses the level from the remaining bytes of a
+     * buffer.
+     *
+     * @param data
+     */
+    public PropertiesLevelReader(java.nio.ByteBuffer data) {
+        this.channel = null;
+        this.buffer = data;
+    }
+
+    /**
+     * Reads a level file in the properties format, see {@link
+     * Main#readFile(java.io.File)}.
+     *
+     * @param file
+     * @param seed           The seed of the level, or {@code null} to use
+     *                       the seed saved in the file or a random one.
+     * @return The level.
+     * @throws java.io.IOException
+     * @throws DataFormatException if the file is not a valid level.
+     */
+    public static Level read(java.io.File file, Long seed) throws java.io.IOException {
+        return new PropertiesLevelReader(Main.readFile(file)).read(seed);
+    }
+
+    /**
+     * @return The seed saved in the level, or {@code null} if there is none.
+     *         Only valid after {@link #read(java.lang.Long)}.
+     */
+    public Long getSavedSeed() {
+        return this.seedData == null ? null : Long.parseLong(this.seedData);
+    }
+
+    /**
+     * Reads the level.
+     *
+     * @param seed           The seed of the level, or {@code null} to use
+     *                       the seed saved in the file or a random one.
+     * @return The level.
+     * @throws java.io.IOException
+     * @throws DataFormatException if the data is not a valid level.
+     */
+    public Level read(Long seed) throws java.io.IOException {
+        while (this.readEntry()) {
+            this.handleEntry();
+        }
+        if (this.grid == null) {
+            throw new DataFormatException("Invalid Width and/or Height.");
+        }
+
+        if (this.seedData != null) {
+            try {
+                long saved = Long.parseLong(this.seedData);
+                if (seed == null) {
+                    seed = saved;
+                }
+            }
+            catch (NumberFormatException e) {
+                throw new DataFormatException("Invalid Seed.");
+            }
+        }
+        Player player = null;
+        if (this.playerData != null) {
+            try {
+                player = Player.load(this.playerData);
+            }
+            catch (DataFormatException e) {
+                throw new DataFormatException("line %d: invalid Player data: %s",
+                        this.playerLine, e.getMessage());
+            }
+        }
+
+        Level level = seed == null
+                ? new Level(new Point(this.width, this.height))
+                : new Level(new Point(this.width, this.height), seed);
+        for (int x = 0; x < this.width; ++x) {
+            for (int y = 0; y < this.height; ++y) {
+                int type = this.grid[y * this.width + x] - 1;
+                Entity entity = null;
+                switch (type) {
+                    case -1:
+                        break;
+                    case 0:
+                        level.setTileAt(x, y, Tile.Wall);
+                        break;
+                    case 1:
+                        level.setTileAt(x, y, Tile.Entrance);
+                        break;
+                    case 2:
+                        level.setTileAt(x, y, Tile.Exit);
+                        break;
+                    case 3:
+                        level.setTileAt(x, y, Tile.StaticThreat);
+                        break;
+                    case 4:
+                        entity = new Enemy();
+                        break;
+                    case 5:
+                        entity = new Key();
+                        break;
+                }
+                if (entity != null) {
+                    entity.setLocation(x, y);
+                    level.addEntity(entity);
+                }
+            }
+        }
+        level.commitChanges();
+
+        // Make sure the player would not be placed on a solid entity.
+        if (player != null) {
+            if (level.isSolidAt(player.getLocation().toPoint())) {
+                throw new DataFormatException(
+                        "Player location is occupied with solid entity");
+            }
+            level.addEntity(player);
+            level.commitChanges();
+        }
+        return level;
+    }
+
+    /**
+     * Interprets the entry that was just read.
+     */
+    private void handleEntry() {
+        // Fields have keys of the form "x,y".
+        int x = 0;
+        int y = 0;
+        int i = 0;
+        for (; i < this.keyLength && this.key[i] >= '0' && this.key[i] <= '9'; ++i) {
+            x = this.checkedDigit(x, this.key[i]);
+        }
+        if (i > 0 && i < this.keyLength && this.key[i] == ',') {
+            int start = ++i;
+            for (; i < this.keyLength && this.key[i] >= '0' && this.key[i] <= '9'; ++i) {
+                y = this.checkedDigit(y, this.key[i]);
+            }
+            if (i > start && i == this.keyLength) {
+                this.setField(x, y, this.parseType());
+                return;
+            }
+        }
+
+        if (this.isKey("Width")) {
+            this.setSize(this.parseSize(), this.height);
+        }
+        else if (this.isKey("Height")) {
+            this.setSize(this.width, this.parseSize());
+        }
+        else if (this.isKey("Seed")) {
+            this.seedData = new String(this.value, 0, this.valueLength);
+            try {
+                Long.parseLong(this.seedData);
+            }
+            catch (NumberFormatException e) {
+                throw new DataFormatException("line %d: Invalid Seed.", this.entryLine);
+            }
+        }
+        else if (this.isKey("Player")) {
+            this.playerData = new String(this.value, 0, this.valueLength);
+            this.playerLine = this.entryLine;
+        }
+    }
+
+    /**
+     * @param name
+     * @return {@code true} if the key of the current entry equals the
+     *         specified name.
+     */
+    private boolean isKey(String name) {
+        if (this.keyLength != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < this.keyLength; ++i) {
+            if (this.key[i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int checkedDigit(int number, char digit) {
+        if (number > (Integer.MAX_VALUE - 9) / 10) {
+            throw new DataFormatException("line %d: '%s' is invalid",
+                    this.entryLine, new String(this.key, 0, this.keyLength));
+        }
+        return number * 10 + (digit - '0');
+    }
+
+    private int parseSize() {
+        int size = 0;
+        for (int i = 0; i < this.valueLength; ++i) {
+            char c = this.value[i];
+            if (c < '0' || c > '9' || size > (Integer.MAX_VALUE - 9) / 10) {
+                size = 0;
+                break;
+            }
+            size = size * 10 + (c - '0');
+        }
+        if (size <= 0) {
+            throw new DataFormatException("line %d: Invalid Width and/or Height.", this.entryLine);
+        }
+        return size;
+    }
+
+    /**
+     * @return The Tile or entity type of the current value + 1, or 0 if it
+     *         is empty.
+     */
+    private byte parseType() {
+        if (this.valueLength == 0) {
+            return 0;
+        }
+        // Accept the same numbers as Integer.parseInt would, eg. "+03".
+        int i = this.value[0] == '+' || this.value[0] == '-' ? 1 : 0;
+        boolean negative = this.value[0] == '-';
+        if (i == this.valueLength) {
+            throw new DataFormatException("line %d: '%s' is invalid",
+                    this.entryLine, new String(this.key, 0, this.keyLength));
+        }
+        int type = 0;
+        for (; i < this.valueLength; ++i) {
+            char c = this.value[i];
+            if (c < '0' || c > '9') {
+                throw new DataFormatException("line %d: '%s' is invalid",
+                        this.entryLine, new String(this.key, 0, this.keyLength));
+            }
+            type = Math.min(type * 10 + (c - '0'), 10);
+        }
+        if (negative && type != 0 || type > 5) {
+            throw new DataFormatException("line %d: Unknown Entity type at '%s'",
+                    this.entryLine, new String(this.key, 0, this.keyLength));
+        }
+        return (byte) (type + 1);
+    }
+
+    private void setSize(int width, int height) {
+        if (this.grid != null && (width != this.width || height != this.height)) {
+            throw new DataFormatException("line %d: Width and Height may not change", this.entryLine);
+        }
+        this.width = width;
+        this.height = height;
+        if (this.grid != null || width < 0 || height < 0) {
+            return;
+        }
+        if ((long) width * height > Integer.MAX_VALUE) {
+            throw new DataFormatException("line %d: Invalid Width and/or Height.", this.entryLine);
+        }
+
+        // Now that the size is known, move the pending fields into the grid.
+        this.grid = new byte[width * height];
+        int currentLine = this.entryLine;
+        for (int i = 0; i < this.pendingCount; ++i) {
+            this.entryLine = this.pendingLine[i];
+            this.setField(this.pendingX[i], this.pendingY[i], this.pendingType[i]);
+        }
+        this.entryLine = currentLine;
+        this.pendingCount = 0;
+        this.pendingX = null;
+        this.pendingY = null;
+        this.pendingType = null;
+        this.pendingLine = null;
+    }
+
+    private void setField(int x, int y, byte type) {
+        if (this.grid != null) {
+            if (x >= this.width || y >= this.height) {
+                throw new DataFormatException("line %d: '%d,%d' is outside of the level",
+                        this.entryLine, x, y);
+            }
+            this.grid[y * this.width + x] = type;
+            return;
+        }
+        if (this.pendingCount == this.pendingX.length) {
+            int capacity = this.pendingCount * 2;
+            this.pendingX = java.util.Arrays.copyOf(this.pendingX, capacity);
+            this.pendingY = java.util.Arrays.copyOf(this.pendingY, capacity);
+            this.pendingType = java.util.Arrays.copyOf(this.pendingType, capacity);
+            this.pendingLine = java.util.Arrays.copyOf(this.pendingLine, capacity);
+        }
+        this.pendingX[this.pendingCount] = x;
+        this.pendingY[this.pendingCount] = y;
+        this.pendingType[this.pendingCount] = type;
+        this.pendingLine[this.pendingCount] = this.entryLine;
+        this.pendingCount += 1;
+    }
+
+    /**
+     * Reads the next key and value, skipping blank lines and comments.
+     *
+     * @return {@code false} at the end of the data.
+     */
+    private boolean readEntry() throws java.io.IOException {
+        int c;
+        while (true) {
+            c = this.skipWhitespace();
+            if (c < 0) {
+                return false;
+            }
+            if (c == '\n' || c == '\r') {
+                this.endLine(c);
+            }
+            else if (c == '#' || c == '!') {
+                do {
+                    c = this.read();
+                }
+                while (c >= 0 && c != '\n' && c != '\r');
+                this.endLine(c);
+            }
+            else {
+                break;
+            }
+        }
+        this.entryLine = this.line;
+
+        // The key ends at the first unescaped separator or whitespace.
+        this.keyLength = 0;
+        boolean separated = false;
+        while (c >= 0 && c != '\n' && c != '\r') {
+            if (c == '=' || c == ':') {
+                separated = true;
+                break;
+            }
+            if (c == ' ' || c == '\t' || c == '\f') {
+                break;
+            }
+            if (c == '\\') {
+                c = this.readEscape();
+                if (c < 0) {
+                    c = this.skipWhitespace();
+                    continue;
+                }
+            }
+            if (this.keyLength == this.key.length) {
+                this.key = java.util.Arrays.copyOf(this.key, this.keyLength * 2);
+            }
+            this.key[this.keyLength++] = (char) c;
+            c = this.read();
+        }
+
+        // Skip the whitespace and at most one separator before the value.
+        if (c == ' ' || c == '\t' || c == '\f') {
+            c = this.skipWhitespace();
+            separated = c == '=' || c == ':';
+        }
+        if (separated) {
+            c = this.skipWhitespace();
+        }
+
+        this.valueLength = 0;
+        while (c >= 0 && c != '\n' && c != '\r') {
+            if (c == '\\') {
+                c = this.readEscape();
+                if (c < 0) {
+                    c = this.skipWhitespace();
+                    continue;
+                }
+            }
+            if (this.valueLength == this.value.length) {
+                this.value = java.util.Arrays.copyOf(this.value, this.valueLength * 2);
+            }
+            this.value[this.valueLength++] = (char) c;
+            c = this.read();
+        }
+        this.endLine(c);
+        return true;
+    }
+
+    /**
+     * Reads the character after a backslash.
+     *
+     * @return The escaped character, or -1 if the line is continued. In
+     *         that case the leading whitespace of the next line is not yet
+     *         skipped.
+     */
+    private int readEscape() throws java.io.IOException {
+        int c = this.read();
+        switch (c) {
+            case -1:
+                return -1;
+            case '\r':
+            case '\n':
+                this.endLine(c);
+                return -1;
+            case 't':
+                return '\t';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case 'u':
+                int result = 0;
+                for (int i = 0; i < 4; ++i) {
+                    c = this.read();
+                    int digit = Character.digit(c, 16);
+                    if (c < 0 || digit < 0) {
+                        throw new DataFormatException("line %d: Malformed \\uxxxx encoding.",
+                                this.line);
+                    }
+                    result = (result << 4) | digit;
+                }
+                return result;
+            default:
+                return c;
+        }
+    }
+
+    private int skipWhitespace() throws java.io.IOException {
+        int c;
+        do {
+            c = this.read();
+        }
+        while (c == ' ' || c == '\t' || c == '\f');
+        return c;
+    }
+
+    /**
+     * Counts a line break and consumes the second half of a {@code \r\n}.
+     */
+    private void endLine(int c) throws java.io.IOException {
+        if (c == '\r') {
+            if (this.peek() == '\n') {
+                this.read();
+            }
+        }
+        if (c >= 0) {
+            this.line += 1;
+        }
+    }
+
+    private int read() throws java.io.IOException {
+        if (!this.buffer.hasRemaining() && !this.fill()) {
+            return -1;
+        }
+        return this.buffer.get() & 0xFF;
+    }
+
+    private int peek() throws java.io.IOException {
+        if (!this.buffer.hasRemaining() && !this.fill()) {
+            return -1;
+        }
+        return this.buffer.get(this.buffer.position()) & 0xFF;
+    }
+
+    private boolean fill() throws java.io.IOException {
+        if (this.channel == null) {
+            return false;
+        }
+        this.buffer.clear();
+        int count;
+        do {
+            count = this.channel.read(this.buffer);
+        }
+        while (count == 0);
+        this.buffer.flip();
+        return count > 0;
+    }
+
+}
@@ -0,0 +1,339 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth;
+
+import edu.tum.rosensteinn.labyrinth.entity.Entity;
+import edu.tum.rosensteinn.labyrinth.entity.Key;
+import edu.tum.rosensteinn.labyrinth.entity.Player;
+
+/**
+ * Records the dynamic state of a {@link Level} every few ticks so that
+ * the game can be rewound. A snapshot holds the locations of the entities
+ * that receive updates, the state of the {@link Player} (see {@link
+ * Player#saveState()}) and which {@link Key}s are alive. Enemies keep
+ * their current direction and random numbers when the level is rewound.
+ *
+ * The snapshots are kept in a ring buffer of a fixed number of frames.
+ * Locations are delta encoded: every {@value #KEYFRAME_INTERVAL}th frame
+ * is a key frame that holds all locations, the other frames only hold the
+ * locations that changed since the previous frame. Old frames are dropped
+ * together with the frames that depend on them, thus the ring has room for
+ * one key frame interval more than the requested capacity. All storage is
+ * allocated up front, so taking a snapshot does not allocate any objects.
+ *
+ * Only the entities that are part of the level when the buffer is
+ * created are recorded.
+ */
+public final class RewindBuffer {
+
+    private static final int KEYFRAME_INTERVAL = 16;
+
+    // The maximum number of locations that are stored. If the frames need
+    // more, the oldest frames are dropped early.
+    private static final int MAX_ENTRIES = 1 << 20;
+
+    private final Level level;
+    private final int interval;
+    private int ticksSinceCapture = 0;
+
+    // The level time is not rewound, the frames are stored at the level
+    // time minus the time that has been rewound so far.
+    private double timeOffset = 0.0;
+
+    private final Entity[] actors;
+    private final Entity[] keys;
+    private final Player player;
+
+    // The locations of the actors in the newest frame.
+    private final double[] lastX;
+    private final double[] lastY;
+
+    // The frames, newest at head - 1.
+    private final int capacity;
+    private final double[] frameTimes;
+    private final boolean[] keyframes;
+    private final int[] frameOffsets;
+    private final int[] frameLengths;
+    private final long[] playerStates;
+    private final long[] keyBits;
+    private final int keyWords;
+    private int head = 0;
+    private int size = 0;
+    private long framesCaptured = 0;
+
+    // The locations stored by the frames, as a ring of entries that the
+    // frames are appended to.
+    private final int[] entryActors;
+    private final double[] entryX;
+    private final double[] entryY;
+    private int entryHead = 0;
+    private int entryCount = 0;
+
+    /**
+     * @param level
+     * @param capacity       The number of snapshots that are kept at least,
+     *                       unless the locations exceed the storage limit
+     *                       of {@value #MAX_ENTRIES} entries.
+     * @param interval       The number of ticks between two snapshots.
+     */
+    public RewindBuffer(Level level, int capacity, int interval) {
+        if (capacity < 1 || interval < 1) {
+            throw new IllegalArgumentException("capacity and interval must be positive");
+        }
+        this.level = level;
+        this.interval = interval;
+
+        java.util.List<Entity> actors = new java.util.ArrayList<>();
+        java.util.List<Entity> keys = new java.util.ArrayList<>();
+        for (Entity entity : level.getEntitiesByClass(Entity.class)) {
+            if (entity instanceof Key) {
+                keys.add(entity);
+            }
+            else if (entity.receivesUpdates()) {
+                actors.add(entity);
+            }
+        }
+        this.actors = actors.toArray(new Entity[actors.size()]);
+        this.keys = keys.toArray(new Entity[keys.size()]);
+        this.player = level.getPlayer();
+        this.lastX = new double[this.actors.length];
+        this.lastY = new double[this.actors.length];
+
+        // Dropping the oldest frames removes up to a whole key frame
+        // interval at once, which must not cut into the requested capacity.
+        capacity += KEYFRAME_INTERVAL;
+        this.capacity = capacity;
+        this.frameTimes = new double[capacity];
+        this.keyframes = new boolean[capacity];
+        this.frameOffsets = new int[capacity];
+        this.frameLengths = new int[capacity];
+        this.playerStates = new long[capacity];
+        this.keyWords = (this.keys.length + 63) >> 6;
+        this.keyBits = new long[capacity * this.keyWords];
+
+        // Room for every actor in every frame, plus the frame that is
+        // about to be added when the buffer is full.
+        long entries = Math.min((long) this.actors.length * (capacity + 1), MAX_ENTRIES);
+        entries = Math.max(entries, this.actors.length);
+        this.entryActors = new int[(int) entries];
+        this.entryX = new double[(int) entries];
+        this.entryY = new double[(int) entries];
+
+        this.capture();
+    }
+
+    /**
+     * Called by the level after every update. Takes a snapshot every
+     * {@code interval} ticks.
+     */
+    void tick() {
+        if (++this.ticksSinceCapture >= this.interval) {
+            this.ticksSinceCapture = 0;
+            this.capture();
+        }
+    }
+
+    /**
+     * @return The number of snapshots in the buffer.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return The number of seconds the level can be rewound.
+     */
+    public double getRewindableTime() {
+        if (this.size == 0) {
+            return 0.0;
+        }
+        return this.getTime() - this.frameTimes[this.frameIndex(0)];
+    }
+
+    private double getTime() {
+        return this.level.getTime() - this.timeOffset;
+    }
+
+    /**
+     * Takes a snapshot of the level now.
+     */
+    public void capture() {
+        Entity[] actors = this.actors;
+        boolean keyframe = this.size == 0 || this.framesCaptured % KEYFRAME_INTERVAL == 0;
+
+        // Count the entries first so that old frames can be dropped to
+        // make room for them.
+        int length = 0;
+        for (int i = 0; i < actors.length; ++i) {
+            double x = actors[i].getX();
+            double y = actors[i].getY();
+            if (keyframe || x != this.lastX[i] || y != this.lastY[i]) {
+                length += 1;
+            }
+        }
+        if (this.size == this.capacity) {
+            this.dropOldest();
+        }
+        while (this.entryCount + length > this.entryX.length) {
+            this.dropOldest();
+        }
+        if (this.size == 0 && !keyframe) {
+            // Dropping the frames removed the key frame this one needs.
+            keyframe = true;
+            length = actors.length;
+        }
+
+        int frame = this.head;
+        this.head = (this.head + 1) % this.capacity;
+        this.size += 1;
+        this.framesCaptured += 1;
+        this.frameTimes[frame] = this.getTime();
+        this.keyframes[frame] = keyframe;
+        this.frameOffsets[frame] = this.entryHead;
+        this.frameLengths[frame] = length;
+        this.entryCount += length;
+
+        int[] entryActors = this.entryActors;
+        int entries = entryActors.length;
+        int entry = this.entryHead;
+        for (int i = 0; i < actors.length; ++i) {
+            double x = actors[i].getX();
+            double y = actors[i].getY();
+            if (keyframe || x != this.lastX[i] || y != this.lastY[i]) {
+                entryActors[entry] = i;
+                this.entryX[entry] = x;
+                this.entryY[entry] = y;
+                this.lastX[i] = x;
+                this.lastY[i] = y;
+                entry = entry + 1 == entries ? 0 : entry + 1;
+            }
+        }
+        this.entryHead = entry;
+
+        this.playerStates[frame] = this.player == null ? 0 : this.player.saveState();
+        int offset = frame * this.keyWords;
+        for (int i = 0; i < this.keyWords; ++i) {
+            this.keyBits[offset + i] = 0;
+        }
+        for (int i = 0; i < this.keys.length; ++i) {
+            if (this.keys[i].isAlive()) {
+                this.keyBits[offset + (i >> 6)] |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * Restores the newest snapshot that is at least {@code seconds} older
+     * than the current level time, or the oldest one if there is none.
+     * Newer snapshots are discarded.
+     *
+     * @param seconds
+     * @return {@code false} if the buffer is empty.
+     */
+    public boolean rewind(double seconds) {
+        if (this.size == 0) {
+            return false;
+        }
+        double time = this.getTime() - seconds;
+        int position = this.size - 1;
+        while (position > 0 && this.frameTimes[this.frameIndex(position)] > time) {
+            position -= 1;
+        }
+        this.restore(position);
+        return true;
+    }
+
+    /**
+     * @param position       The position of a frame from the oldest.
+     * @return The index of the frame in the frame arrays.
+     */
+    private int frameIndex(int position) {
+        return (this.head - this.size + position + this.capacity) % this.capacity;
+    }
+
+    /**
+     * Drops the oldest frame together with the frames that depend on it,
+     * up to the next key frame.
+     */
+    private void dropOldest() {
+        do {
+            this.entryCount -= this.frameLengths[this.frameIndex(0)];
+            this.size -= 1;
+        }
+        while (this.size > 0 && !this.keyframes[this.frameIndex(0)]);
+    }
+
+    private void restore(int position) {
+        // Decode the locations from the key frame up to the frame.
+        int start = position;
+        while (!this.keyframes[this.frameIndex(start)]) {
+            start -= 1;
+        }
+        int entries = this.entryActors.length;
+        for (int p = start; p <= position; ++p) {
+            int frame = this.frameIndex(p);
+            int entry = this.frameOffsets[frame];
+            for (int n = this.frameLengths[frame]; n > 0; --n) {
+                int actor = this.entryActors[entry];
+                this.lastX[actor] = this.entryX[entry];
+                this.lastY[actor] = this.entryY[entry];
+                entry = entry + 1 == entries ? 0 : entry + 1;
+            }
+        }
+
+        int frame = this.frameIndex(position);
+        for (int i = 0; i < this.actors.length; ++i) {
+            Entity actor = this.actors[i];
+            if (actor.isAlive()) {
+                this.level.moveEntity(actor, this.lastX[i], this.lastY[i]);
+            }
+        }
+        if (this.player != null) {
+            this.player.loadState(this.playerStates[frame]);
+        }
+        int offset = frame * this.keyWords;
+        for (int i = 0; i < this.keys.length; ++i) {
+            Entity key = this.keys[i];
+            boolean alive = (this.keyBits[offset + (i >> 6)] & (1L << i)) != 0;
+            if (alive && !key.isAlive()) {
+                this.level.addEntity(key);
+            }
+            else if (!alive && key.isAlive()) {
+                this.level.removeEntity(key);
+            }
+        }
+        this.level.commitChanges();
+
+        // Discard the newer frames.
+        int removed = this.size - 1 - position;
+        for (int p = position + 1; p < this.size; ++p) {
+            this.entryCount -= this.frameLengths[this.frameIndex(p)];
+        }
+        this.size -= removed;
+        this.head = (frame + 1) % this.capacity;
+        this.entryHead = (this.frameOffsets[frame] + this.frameLengths[frame]) % entries;
+        this.ticksSinceCapture = 0;
+        this.timeOffset = this.level.getTime() - this.frameTimes[frame];
+    }
+
+}
@@ -22,16 +22,22 @@
 
 package edu.tum.rosensteinn.labyrinth.entity;
 
+import edu.tum.rosensteinn.labyrinth.ActorStore;
 import edu.tum.rosensteinn.labyrinth.Point;
 import edu.tum.rosensteinn.labyrinth.Level;
 
 /**
- * An Actor is a moving, or even "thinking" entity. An actor computes its
- * new location in {@link #calculateNewLocation(pacmania.Level, double)}.
- * If this location can not be reached due to another blocking entity,
- * the maximum distance is travelled and set in the Actor's {@link #location},
- * and then {@link #onCollision(pacmania.Level, pacmania.Entity)} will be
- * called with the solid entity.
+ * An Actor is a moving, or even "thinking" entity. An actor moves in its
+ * {@link #getDirection() direction} with its {@link #getSpeed() speed}
+ * while it is {@link #isMoving() moving}, and may change these in {@link
+ * #steer(Level, double)} before it moves. If the new location can not be
+ * reached due to another blocking entity, the maximum distance is
+ * travelled and {@link #onCollision(Level, Entity)} will be called with
+ * the solid entity.
+ *
+ * While the actor is part of a level, its location, direction and speed
+ * are kept in the level's {@link ActorStore} and the level moves all
+ * actors in one loop over the store.
  *
  * The way of an Actor can only be blocked if it is itself solid, which it
  * is by default.
@@ -39,78 +45,217 @@ import edu.tum.rosensteinn.labyrinth.Level;
 public abstract class Actor extends Entity {
 
     /**
-     * Subclasses must implement this method to compute their new
-     * location. This new location could be invalid due to another
-     * blocking entity. If this is the case, {@link
-     * #onNewLocationBlocked(Entity, Coordinate)} is called.
+     * Reused to walk the path to the new location in every update.
+     */
+    private final Location.PathCursor path = new Location.PathCursor();
+
+    /**
+     * The movement state while the actor is not part of an {@link
+     * ActorStore}. Otherwise the store holds it.
+     */
+    private Direction direction = null;
+    private int speed = 0;
+    private boolean moving = false;
+
+    /**
+     * @return The direction the actor is facing, or {@code null}.
+     */
+    public final Direction getDirection() {
+        ActorStore store = this.getStore();
+        return store == null ? this.direction : store.getDirection(store.indexOf(this));
+    }
+
+    public final void setDirection(Direction direction) {
+        ActorStore store = this.getStore();
+        if (store == null) {
+            this.direction = direction;
+        }
+        else {
+            store.setDirection(store.indexOf(this), direction);
+        }
+    }
+
+    /**
+     * @return The number of fields the actor travels per second.
+     */
+    public final int getSpeed() {
+        ActorStore store = this.getStore();
+        return store == null ? this.speed : store.getSpeed(store.indexOf(this));
+    }
+
+    public final void setSpeed(int speed) {
+        ActorStore store = this.getStore();
+        if (store == null) {
+            this.speed = speed;
+        }
+        else {
+            store.setSpeed(store.indexOf(this), speed);
+        }
+    }
+
+    /**
+     * @return {@code true} if the actor is currently moving, {@code false}
+     *         if it stands still. An actor without a direction never moves.
+     */
+    public final boolean isMoving() {
+        ActorStore store = this.getStore();
+        return store == null ? this.moving : store.isMoving(store.indexOf(this));
+    }
+
+    public final void setMoving(boolean moving) {
+        ActorStore store = this.getStore();
+        if (store == null) {
+            this.moving = moving;
+        }
+        else {
+            store.setMoving(store.indexOf(this), moving);
+        }
+    }
+
+    /**
+     * Called in every update before the actor moves. Subclasses may change
+     * the direction, speed and whether the actor moves here. The default
+     * implementation does nothing.
      *
      * @param level
      * @param deltaTime
-     * @return The new location of the entity.
      */
-    public abstract Location calculateNewLocation(Level level, double deltaTime);
+    public void steer(Level level, double deltaTime) {
+        // intentionally left blank
+    }
 
-    // Entity
+    /**
+     * Specifies if {@link #steer(Level, double)} may be called for this
+     * actor in parallel to other actors, before any actor of the level
+     * moved in the current update. This is only the case if the method
+     * reads nothing but the level's tiles and solidity and state of this
+     * actor that can not be changed by the collision callbacks of other
+     * entities.
+     *
+     * @return {@code true} if the actor can be steered concurrently,
+     *         {@code false} by default.
+     */
+    public boolean canCalculateConcurrently() {
+        return false;
+    }
 
-    @Override
-    public void update(Level level, double deltaTime) {
+    /**
+     * Moves the actor along the path to the location {@code (nextX,
+     * nextY)}. If it crosses other entities, the collision callbacks of
+     * both are invoked and the actor stops in front of the first one that
+     * blocks it.
+     *
+     * @param level
+     * @param nextX          The location the actor wants to reach.
+     * @param nextY
+     */
+    public void moveTo(Level level, double nextX, double nextY) {
         Point levelSize = level.getSize();
-        Location current = this.location.copy();
-        Location next = this.calculateNewLocation(level, deltaTime);
-        Point[] path = current.computePath(next);
+        Location.PathCursor path = this.path;
+        path.reset(this.getX(), this.getY(), nextX, nextY);
+
+        // The first coordinate of the path is the current location.
+        path.next();
+        int lastX = path.x;
+        int lastY = path.y;
 
         // Check if any other entities are crossed and invoke their
         // onCollision() method. If any of the entities is solid, this
         // one will stop here.
         boolean collision = false;
-        for (int i = 1; i < path.length && !collision; ++i) {
+        while (!collision && path.next()) {
             // Make sure the entity doesn't leave the level boundaries.
-            Point pos = path[i];
-            if (!levelSize.contains(pos)) {
+            int x = path.x;
+            int y = path.y;
+            if (x < 0 || x >= levelSize.x || y < 0 || y >= levelSize.y) {
                 collision = true;
                 this.onCollision(level, null);
-                this.location = new Location(path[i - 1]);
+                this.setLocation(lastX, lastY);
                 break;
             }
 
-            // Get the entities at the current location.
-            EntityList entities = level.getEntitiesAt(path[i]);
-            if (entities == null || entities.isEmpty())
-                continue;
-
-            // Check each entitiy if it's solid.
-            for (Entity entity : entities) {
-                // It should never happen that we find the same entity
-                // in the current field.
-                assert(entity != this);
-
-                // If the this and the other entity is solid, we can not
-                // pass through it.
-                if (entity.isSolid() && this.isSolid()) {
-                    // Set the current entities location the farthest
-                    // distance, near the entity it just collided with.
-                    this.location = new Location(path[i - 1]);
-                    collision = true;
-                }
+            // The level knows if there is any solid entity in the field,
+            // so we only need to look for it if we are blocked anyway.
+            boolean blocked = this.isSolid() && level.isSolidAt(x, y);
+
+            // Deliver the collision to the tile and each entity at the
+            // current location until we find the solid one.
+            Entity tile = level.getTileAt(x, y).getEntity();
+            if (tile != null) {
+                collision = this.collide(level, tile, blocked);
+            }
+            EntityList entities = level.getEntitiesAt(x, y);
+            if (!collision && entities != null) {
+                for (Entity entity : entities) {
+                    // It should never happen that we find the same entity
+                    // in the current field.
+                    assert(entity != this);
 
-                this.onCollision(level, entity);
-                entity.onCollision(level, this);
-                if (collision) {
-                    break;
+                    collision = this.collide(level, entity, blocked);
+                    if (collision) {
+                        break;
+                    }
                 }
             }
+
+            // Set the current entities location the farthest distance,
+            // near the entity it just collided with.
+            if (collision) {
+                this.setLocation(lastX, lastY);
+            }
+            lastX = x;
+            lastY = y;
         }
 
         // If the entity didn't collide with a solid entity, we will use
         // the calculated location as its new location.
         if (!collision) {
-            this.location = next;
+            this.setLocation(nextX, nextY);
         }
     }
 
+    // Entity
+
+    /**
+     * Steers and moves the actor. This is only called by the {@link Level}
+     * for actors that can not be {@link #canCalculateConcurrently()
+     * steered concurrently}, the others are moved by the level directly.
+     */
+    @Override
+    public void update(Level level, double deltaTime) {
+        this.steer(level, deltaTime);
+        ActorStore store = this.getStore();
+        int index = store.indexOf(this);
+        store.integrate(index, deltaTime);
+        this.moveTo(level, store.getTargetX(index), store.getTargetY(index));
+    }
+
+    /**
+     * Invokes the collision callbacks of this and the other entity.
+     *
+     * @param level
+     * @param other
+     * @param blocked        {@code true} if the field of the other entity
+     *                       blocks this entity.
+     * @return {@code true} if this entity can not pass the other entity.
+     */
+    private boolean collide(Level level, Entity other, boolean blocked) {
+        this.onCollision(level, other);
+        other.onCollision(level, this);
+
+        // If the this and the other entity is solid, we can not pass
+        // through it.
+        return blocked && other.isSolid();
+    }
+
     @Override
     public boolean isSolid() {
         return true;
     }
 
+    @Override
+    public boolean receivesUpdates() {
+        return true;
+    }
+
 }
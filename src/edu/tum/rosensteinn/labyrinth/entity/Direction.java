@@ -27,32 +27,70 @@ package edu.tum.rosensteinn.labyrinth.entity;
  * player or an enemy may be facing to.
  */
 public enum Direction {
-    Left,
-    Right,
-    Up,
-    Down;
-
-    public Location updateLocation(Location location, double amount) {
-        location = location.copy();
-        switch (this) {
-            case Left:
-                location.x -= amount;
-                location.y = Math.round(location.y);
-                break;
-            case Right:
-                location.x += amount;
-                location.y = Math.round(location.y);
-                break;
-            case Up:
-                location.x = Math.round(location.x);
-                location.y -= amount;
-                break;
-            case Down:
-                location.x = Math.round(location.x);
-                location.y += amount;
-                break;
+    Left(-1, 0),
+    Right(1, 0),
+    Up(0, -1),
+    Down(0, 1);
+
+    private static final Direction[] values = Direction.values();
+
+    private final int deltaX;
+    private final int deltaY;
+
+    private Direction(int deltaX, int deltaY) {
+        this.deltaX = deltaX;
+        this.deltaY = deltaY;
+    }
+
+    /**
+     * @return -1, 0 or 1, the sign of the horizontal movement in this
+     *         direction.
+     */
+    public int getDeltaX() {
+        return this.deltaX;
+    }
+
+    /**
+     * @return -1, 0 or 1, the sign of the vertical movement in this
+     *         direction.
+     */
+    public int getDeltaY() {
+        return this.deltaY;
+    }
+
+    /**
+     * Moves one coordinate of a location by the specified amount in a
+     * direction. The location is snapped to the closest field on the axis
+     * the direction does not move along.
+     *
+     * @param value          The coordinate.
+     * @param delta          The delta of a direction on the same axis.
+     * @param amount
+     * @return The new coordinate.
+     */
+    public static double move(double value, int delta, double amount) {
+        if (delta == 0) {
+            return Math.round(value);
         }
-        return location;
+        return delta < 0 ? value - amount : value + amount;
+    }
+
+    /**
+     * @return The value that represents this direction in an {@link
+     *         edu.tum.rosensteinn.labyrinth.ActorStore}.
+     */
+    public byte toByte() {
+        return (byte) this.ordinal();
+    }
+
+    /**
+     * @param value          A value returned by {@link #toByte()}, or a
+     *                       negative value for no direction.
+     * @return The direction that is represented by the specified value,
+     *         or {@code null}.
+     */
+    public static Direction fromByte(byte value) {
+        return value < 0 ? null : Direction.values[value];
     }
 
 }
@@ -22,7 +22,6 @@
 
 package edu.tum.rosensteinn.labyrinth.entity;
 
-import edu.tum.rosensteinn.labyrinth.Point;
 import edu.tum.rosensteinn.labyrinth.Level;
 import com.googlecode.lanterna.terminal.Terminal.Color;
 
@@ -35,41 +34,86 @@ public class Enemy extends Actor {
     public static final Entity.Visual visual = new Entity.Visual(
             '\u2638', Color.RED, Color.DEFAULT);
 
-    private Direction direction = Direction.Down;
-    private int speed = 3;
+    /**
+     * The probability that the enemy chooses a new direction within
+     * {@link #directionChangeInterval} seconds. The probability per update
+     * is derived from it, so enemies behave the same regardless of the
+     * time between their updates.
+     */
     private final double directionChangeProbability = 0.10;
+    private final double directionChangeInterval = 1.0 / 60.0;
+
+    // The probability per update for the last delta time.
+    private double lastDeltaTime = 0.0;
+    private double lastProbability = 0.0;
+
+    private java.util.SplittableRandom random = null;
+
+    public Enemy() {
+        super();
+        this.setDirection(Direction.Down);
+        this.setSpeed(3);
+        this.setMoving(true);
+    }
 
     public void chooseNewDirection(Level level) {
-        Point pos = this.location.toPoint();
-        java.util.ArrayList<Direction> choices
-                = new java.util.ArrayList<>();
-        if (level.getEntityAt(pos.x - 1, pos.y) == null)
-            choices.add(Direction.Left);
-        if (level.getEntityAt(pos.x + 1, pos.y) == null)
-            choices.add(Direction.Right);
-        if (level.getEntityAt(pos.x, pos.y - 1) == null)
-            choices.add(Direction.Up);
-        if (level.getEntityAt(pos.x, pos.y + 1) == null)
-            choices.add(Direction.Down);
-        if (choices.isEmpty()) {
-            this.direction = null;
+        int x = (int) Math.round(this.getX());
+        int y = (int) Math.round(this.getY());
+
+        // One bit per free direction, by the direction's ordinal.
+        int choices = 0;
+        if (!level.isSolidAt(x - 1, y))
+            choices |= 1 << Direction.Left.ordinal();
+        if (!level.isSolidAt(x + 1, y))
+            choices |= 1 << Direction.Right.ordinal();
+        if (!level.isSolidAt(x, y - 1))
+            choices |= 1 << Direction.Up.ordinal();
+        if (!level.isSolidAt(x, y + 1))
+            choices |= 1 << Direction.Down.ordinal();
+        if (choices == 0) {
+            this.setDirection(null);
+            return;
         }
-        else {
-            this.direction = choices.get((int) (Math.random() * choices.size()));
+        int choice = this.random.nextInt(Integer.bitCount(choices));
+        for (int i = 0; i < 4; ++i) {
+            if ((choices & (1 << i)) != 0 && choice-- == 0) {
+                this.setDirection(Direction.fromByte((byte) i));
+                return;
+            }
         }
     }
 
     @Override
-    public Location calculateNewLocation(Level level, double deltaTime) {
-        if (Math.random() < this.directionChangeProbability) {
-            this.chooseNewDirection(level);
-        }
-        if (this.direction == null) {
-            return this.location;
+    public void onAdd(Level level) {
+        super.onAdd(level);
+        this.random = level.splitRandom();
+    }
+
+    @Override
+    public boolean canCalculateConcurrently() {
+        return true;
+    }
+
+    /**
+     * @param deltaTime
+     * @return The probability to choose a new direction in an update
+     *         over the specified time.
+     */
+    private double getDirectionChangeProbability(double deltaTime) {
+        if (deltaTime != this.lastDeltaTime) {
+            this.lastDeltaTime = deltaTime;
+            this.lastProbability = 1.0 - Math.pow(1.0 - this.directionChangeProbability,
+                    deltaTime / this.directionChangeInterval);
         }
-        return this.direction.updateLocation(this.location, this.speed * deltaTime);
+        return this.lastProbability;
     }
 
+    @Override
+    public void steer(Level level, double deltaTime) {
+        if (this.random.nextDouble() < this.getDirectionChangeProbability(deltaTime)) {
+            this.chooseNewDirection(level);
+        }
+    }
 
     @Override
     public Visual getVisual() {
@@ -22,6 +22,7 @@
 
 package edu.tum.rosensteinn.labyrinth.entity;
 
+import edu.tum.rosensteinn.labyrinth.ActorStore;
 import edu.tum.rosensteinn.labyrinth.Level;
 import edu.tum.rosensteinn.labyrinth.gui.Event;
 
@@ -47,24 +48,128 @@ public abstract class Entity {
     }
 
     /**
-     * The location of the entity in the 2 dimensional field. It is
-     * internally using a floating-point precision but will be rounded
-     * and converted to an integer to determine the fixed location on
-     * the field.
+     * The location and previous location of the entity while it is not
+     * part of an {@link ActorStore}. Otherwise the store holds them.
      */
-    public Location location = new Location();
+    private double x, y;
+    private double prevX, prevY;
 
     /**
-     * The previous location of the entity. This is automatically set
-     * by the {@link Level} before {@link #update(Level)} is called.
+     * The store that holds the state of the entity, or {@code null}.
      */
-    public Location prevLocation = new Location();
+    private ActorStore store = null;
 
     /**
      * Keeps track if the entity is contained in a level or not.
      */
     private boolean isAlive_ = false;
 
+    /**
+     * The id of the entity in the level it is contained in.
+     */
+    private int id = -1;
+
+    /**
+     * @return The id of the entity in the {@link Level} it is part of or
+     *         queued for, or -1 if there is none. Ids are small non-negative
+     *         numbers that are reused after an entity has been removed.
+     */
+    public final int getId() {
+        return this.id;
+    }
+
+    /**
+     * Changes the id of the entity. This method is called by the {@link
+     * Level} when the entity is added or removed and should not be called
+     * otherwise.
+     *
+     * @param id
+     */
+    public final void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * @return The store that holds the location of the entity, or {@code
+     *         null} if the entity keeps it itself.
+     */
+    public final ActorStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * Changes the store that holds the location of the entity. This
+     * method is called by the {@link ActorStore} when the entity is added
+     * or removed and should not be called otherwise.
+     *
+     * @param store
+     */
+    public final void setStore(ActorStore store) {
+        this.store = store;
+    }
+
+    /**
+     * The location of the entity in the 2 dimensional field. It is
+     * internally using a floating-point precision but will be rounded
+     * and converted to an integer to determine the fixed location on
+     * the field.
+     *
+     * @return A copy of the location.
+     */
+    public final Location getLocation() {
+        return new Location(this.getX(), this.getY());
+    }
+
+    public final double getX() {
+        ActorStore store = this.store;
+        return store == null ? this.x : store.getX(store.indexOf(this));
+    }
+
+    public final double getY() {
+        ActorStore store = this.store;
+        return store == null ? this.y : store.getY(store.indexOf(this));
+    }
+
+    public final void setLocation(Location location) {
+        this.setLocation(location.x, location.y);
+    }
+
+    public final void setLocation(double x, double y) {
+        ActorStore store = this.store;
+        if (store == null) {
+            this.x = x;
+            this.y = y;
+        }
+        else {
+            store.setLocation(store.indexOf(this), x, y);
+        }
+    }
+
+    /**
+     * @return A copy of the location of the entity before the current or
+     *         last update. It is set by the {@link Level} before the entity
+     *         is updated.
+     */
+    public final Location getPrevLocation() {
+        ActorStore store = this.store;
+        if (store == null) {
+            return new Location(this.prevX, this.prevY);
+        }
+        int index = store.indexOf(this);
+        return new Location(store.getPrevX(index), store.getPrevY(index));
+    }
+
+    public final void setPrevLocation(double x, double y) {
+        ActorStore store = this.store;
+        if (store == null) {
+            this.prevX = x;
+            this.prevY = y;
+        }
+        else {
+            store.setPrevLocation(store.indexOf(this), x, y);
+        }
+    }
+
     /**
      * @return {@code true} if the Entity is part of a {@link Level},
      *         {@code false} if it is not.
@@ -76,7 +181,8 @@ public abstract class Entity {
     /**
      * This method specifies if the entity is solid or if it can be
      * ignored during collision with another entity. All entities are
-     * non-solid by default.
+     * non-solid by default. The result must not change while the entity
+     * is part of a level.
      *
      * @return {@code true} if the Entity is solid, {@code false} if
      *         it is not.
@@ -85,6 +191,19 @@ public abstract class Entity {
         return false;
     }
 
+    /**
+     * This method specifies if the entity must be updated each frame. A
+     * {@link Level} only calls {@link #update(Level, double)} on entities
+     * that return {@code true}. The result must not change while the
+     * entity is part of a level.
+     *
+     * @return {@code true} if the Entity is updated each frame, {@code
+     *         false} if it is not. Entities are not updated by default.
+     */
+    public boolean receivesUpdates() {
+        return false;
+    }
+
     /**
      * Only one entity can be rendered at one "pixel". This method
      * determines the entities z-depth. The entity with the highest
@@ -132,6 +251,20 @@ public abstract class Entity {
         this.isAlive_ = false;
     }
 
+    /**
+     * This method specifies the types of events the entity handles. A
+     * {@link Level} only passes events to {@link #onEvent(Level, Event)}
+     * that are instances of one of these types. The types should not
+     * overlap and the result must not change while the entity is part
+     * of a level.
+     *
+     * @return The event types the entity subscribes to. Entities do not
+     *         subscribe to any events by default.
+     */
+    public java.util.Collection<Class<? extends Event>> getEventTypes() {
+        return java.util.Collections.emptyList();
+    }
+
     /**
      * Called on an event. The entity may prevent further propagation of
      * the event by returning {@const true}.
@@ -31,6 +31,113 @@ import edu.tum.rosensteinn.labyrinth.Point;
  */
 public final class Location {
 
+    /**
+     * This class implements Bresenham's line algorithm to walk the
+     * coordinates that lie between two locations without allocating
+     * any objects. A cursor can be reused for any number of paths.
+     *
+     * See https://en.wikipedia.org/wiki/Bresenham%27s_line_algorithm
+     */
+    public static final class PathCursor {
+
+        /**
+         * The coordinate the cursor is currently positioned at. Only valid
+         * after {@link #next()} returned {@code true}.
+         */
+        public int x, y;
+
+        private int ix, iy, x1, y1, signX, signY, steps;
+        private boolean vertical, started, done;
+        private double error, deltaError;
+
+        /**
+         * Positions the cursor before the first coordinate of the path
+         * from {@code from} to {@code dest}.
+         *
+         * @param from           The start location.
+         * @param dest           The destination location.
+         */
+        public void reset(Location from, Location dest) {
+            this.reset(from.x, from.y, dest.x, dest.y);
+        }
+
+        public void reset(double fromX, double fromY, double destX, double destY) {
+            this.ix = (int) Math.round(fromX);
+            this.iy = (int) Math.round(fromY);
+            this.x1 = (int) Math.round(destX);
+            this.y1 = (int) Math.round(destY);
+            this.signX = ((this.x1 - this.ix) < 0 ? -1 : 1);
+            this.signY = ((this.y1 - this.iy) < 0 ? -1 : 1);
+            this.vertical = (this.x1 == this.ix);
+            this.deltaError = Math.abs(
+                    (double) (this.y1 - this.iy) / (double) (this.x1 - this.ix));
+            this.error = 0;
+            this.steps = 0;
+            this.started = false;
+            this.done = false;
+        }
+
+        /**
+         * Advances the cursor to the next coordinate of the path.
+         *
+         * @return {@code true} if the cursor moved to the next coordinate,
+         *         {@code false} if the end of the path has been reached.
+         */
+        public boolean next() {
+            if (this.done) {
+                return false;
+            }
+            if (!this.started) {
+                this.started = true;
+                return this.emitColumn();
+            }
+
+            // Special handling for vertical lines. deltaX would be zero.
+            if (this.vertical) {
+                if (this.iy == this.y1) {
+                    this.done = true;
+                    return false;
+                }
+                this.iy += this.signY;
+                this.x = this.ix;
+                this.y = this.iy;
+                return true;
+            }
+
+            while (this.error >= 0.5) {
+                // The first step in y direction would yield the coordinate
+                // that has already been emitted for the current column.
+                boolean emit = this.steps > 0;
+                this.x = this.ix;
+                this.y = this.iy;
+                this.iy += this.signY;
+                this.error -= 1.0;
+                this.steps += 1;
+                if (emit) {
+                    return true;
+                }
+            }
+
+            if (this.ix == this.x1) {
+                this.done = true;
+                return false;
+            }
+            this.ix += this.signX;
+            return this.emitColumn();
+        }
+
+        private boolean emitColumn() {
+            this.x = this.ix;
+            this.y = this.iy;
+            if (!this.vertical) {
+                this.error += this.deltaError;
+                this.steps = 0;
+            }
+            return true;
+        }
+
+    }
+
     public double x, y;
 
     public Location() {
@@ -79,52 +186,13 @@ public final class Location {
      *         of a single item if it remains at its original position.
      */
     public Point[] computePath(Location dest) {
-        // See https://en.wikipedia.org/wiki/Bresenham%27s_line_algorithm
-
         final java.util.ArrayList<Point> result
                 = new java.util.ArrayList<>();
-        final Point from = this.toPoint();
-        final Point to = dest.toPoint();
-        final int x0, y0, x1, y1, signX, signY;
-
-        x0 = from.x;
-        y0 = from.y;
-        x1 = to.x;
-        y1 = to.y;
-        signX = ((x1 - x0) < 0 ? -1 : 1);
-        signY = ((y1 - y0) < 0 ? -1 : 1);
-
-        // Special handling for vertical lines. deltaX would be zero.
-        if (x1 == x0) {
-            for (int iy = y0; iy != (y1 + signY); iy += signY) {
-                result.add(new Point(x0, iy));
-            }
-            return result.toArray(new Point[0]);
-        }
-
-        double deltaX, deltaY, error, deltaError;
-        deltaX = x1 - x0;
-        deltaY = y1 - y0;
-        error = 0;
-        deltaError = Math.abs(deltaY / deltaX);
-
-        int iy = y0;
-        for (int ix = x0; ix != (x1 + signX); ix += signX) {
-            Point current = new Point(ix, iy);
-            result.add(current);
-
-            error += deltaError;
-            while (error >= 0.5) {
-                Point next = new Point(ix, iy);
-                if (!next.equals(current)) {
-                    result.add(next);
-                }
-
-                iy += signY;
-                error -= 1.0;
-            }
+        final PathCursor cursor = new PathCursor();
+        cursor.reset(this, dest);
+        while (cursor.next()) {
+            result.add(new Point(cursor.x, cursor.y));
         }
-
         return result.toArray(new Point[0]);
     }
 
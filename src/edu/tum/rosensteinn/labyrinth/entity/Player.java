@@ -39,25 +39,28 @@ public class Player extends Actor {
     public static final Entity.Visual visual = new Entity.Visual(
             '\u263B', Color.MAGENTA, Color.DEFAULT);
 
-    /**
-     * The number of lives that remain.
-     */
-    public int lives;
+    private static final java.util.Collection<Class<? extends Event>> eventTypes
+            = java.util.Collections.<Class<? extends Event>>singletonList(KeyboardEvent.class);
 
     /**
-     * The number of maximum lives that the Player can have.
+     * The ranges of the values that can be packed by {@link #saveState()}.
+     * {@link #load(String)} rejects players with values outside of them.
      */
-    public int maxLives;
+    public static final int MIN_LIVES = Short.MIN_VALUE;
+    public static final int MAX_LIVES = Short.MAX_VALUE;
+    public static final int MAX_KEYS = 0xFFFF;
+    public static final int MAX_MAX_LIVES = (1 << 13) - 1;
+    public static final int MAX_SPEED = (1 << 13) - 1;
 
     /**
-     * The direction in which the Player is facing.
+     * The number of lives that remain.
      */
-    public Direction direction;
+    public int lives;
 
     /**
-     * The number of fields the Player travels per second.
+     * The number of maximum lives that the Player can have.
      */
-    public int speed;
+    public int maxLives;
 
     /**
      * The number of keys picked up.
@@ -69,21 +72,15 @@ public class Player extends Actor {
      */
     public boolean won;
 
-    /**
-     * {@code true} if the Player is currently moving, {@code false} if
-     * it is not. A player may stop moving if it hits a solid entity.
-     */
-    public boolean moving;
-
     public Player(int maxLives, Direction direction, int speed) {
         super();
         this.lives = maxLives;
         this.maxLives = maxLives;
-        this.direction = direction;
-        this.speed = speed;
+        this.setDirection(direction);
+        this.setSpeed(speed);
         this.won = false;
         this.keys = 0;
-        this.moving = false;
+        this.setMoving(false);
     }
 
     /**
@@ -94,9 +91,54 @@ public class Player extends Actor {
      */
     public final String save() {
         return "" + this.lives + " " + this.maxLives + " "
-                  + this.direction.ordinal() + " " + this.speed + " "
-                  + this.keys + " " + this.moving + " " + this.location.x + " "
-                  + this.location.y;
+                  + this.getDirection().ordinal() + " " + this.getSpeed() + " "
+                  + this.keys + " " + this.isMoving() + " " + this.getX() + " "
+                  + this.getY();
+    }
+
+    /**
+     * Packs the state written by {@link #save()}, except for the location,
+     * into a single number without allocating any objects. The lives are
+     * stored with 16 bits, the keys with 16 bits and the maximum lives and
+     * speed with 13 bits each.
+     *
+     * @return The packed state, see {@link #loadState(long)}.
+     * @throws IllegalStateException if a value is out of the range that
+     *         can be packed, see {@link #MAX_SPEED} etc.
+     */
+    public final long saveState() {
+        long state = Player.pack(this.lives, MIN_LIVES, MAX_LIVES, "lives") & 0xFFFFL;
+        state |= Player.pack(this.keys, 0, MAX_KEYS, "keys") << 16;
+        state |= Player.pack(this.maxLives, 0, MAX_MAX_LIVES, "maxLives") << 32;
+        state |= Player.pack(this.getSpeed(), 0, MAX_SPEED, "speed") << 45;
+        Direction direction = this.getDirection();
+        state |= (long) (direction == null ? 0 : direction.ordinal() + 1) << 58;
+        state |= (this.isMoving() ? 1L : 0L) << 61;
+        state |= (this.won ? 1L : 0L) << 62;
+        return state;
+    }
+
+    private static long pack(int value, int min, int max, String name) {
+        if (value < min || value > max) {
+            throw new IllegalStateException(name + " can not be packed: " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Restores the state packed by {@link #saveState()}.
+     *
+     * @param state
+     */
+    public final void loadState(long state) {
+        this.lives = (short) state;
+        this.keys = (int) ((state >>> 16) & 0xFFFF);
+        this.maxLives = (int) ((state >>> 32) & MAX_MAX_LIVES);
+        this.setSpeed((int) ((state >>> 45) & MAX_SPEED));
+        int direction = (int) ((state >>> 58) & 0x7);
+        this.setDirection(Direction.fromByte((byte) (direction - 1)));
+        this.setMoving(((state >>> 61) & 1) != 0);
+        this.won = ((state >>> 62) & 1) != 0;
     }
 
     @Override
@@ -107,11 +149,11 @@ public class Player extends Actor {
     @Override
     public final void onCollision(Level level, Entity other) {
         if (other == null) { // collision with level boundaries
-            this.moving = false;
+            this.setMoving(false);
             return;
         }
         else if (other.isSolid()) {
-            this.moving = false;
+            this.setMoving(false);
         }
 
         if (other instanceof Key) {
@@ -125,50 +167,47 @@ public class Player extends Actor {
             this.lives = 0;
         }
         else if (other instanceof Exit) {
-            if (level.getEntitiesByClass(Key.class).isEmpty()) {
+            if (level.getRemainingKeys() == 0) {
                 this.won = true;
             }
         }
     }
 
+    @Override
+    public final java.util.Collection<Class<? extends Event>> getEventTypes() {
+        return Player.eventTypes;
+    }
+
     @Override
     public final boolean onEvent(Level level, Event event) {
         if (event instanceof KeyboardEvent) {
             com.googlecode.lanterna.input.Key key = ((KeyboardEvent) event).key;
             switch (key.getKind()) {
                 case ArrowLeft:
-                    this.moving = true;
-                    this.direction = Direction.Left;
+                    this.setMoving(true);
+                    this.setDirection(Direction.Left);
                     return true;
                 case ArrowRight:
-                    this.moving = true;
-                    this.direction = Direction.Right;
+                    this.setMoving(true);
+                    this.setDirection(Direction.Right);
                     return true;
                 case ArrowUp:
-                    this.moving = true;
-                    this.direction = Direction.Up;
+                    this.setMoving(true);
+                    this.setDirection(Direction.Up);
                     return true;
                 case ArrowDown:
-                    this.moving = true;
-                    this.direction = Direction.Down;
+                    this.setMoving(true);
+                    this.setDirection(Direction.Down);
                     return true;
             }
             if (key.getCharacter() == ' ') {
-                this.moving = false;
+                this.setMoving(false);
                 return true;
             }
         }
         return false;
     }
 
-    @Override
-    public final Location calculateNewLocation(Level level, double deltaTime) {
-        if (!this.moving) {
-            return this.location;
-        }
-        return this.direction.updateLocation(this.location, this.speed * deltaTime);
-    }
-
     @Override
     public final Visual getVisual() {
         return Player.visual;
@@ -210,12 +249,12 @@ public class Player extends Actor {
             int direction = scanner.nextInt();
             if (direction < 0 || direction >= Direction.values().length)
                 throw new DataFormatException("invalid direction index");
-            player.direction = Direction.values()[direction];
+            player.setDirection(Direction.fromByte((byte) direction));
             if (!scanner.hasNextInt()) {
                 place = "speed";
                 break;
             }
-            player.speed = scanner.nextInt();
+            player.setSpeed(scanner.nextInt());
             if (!scanner.hasNextInt()) {
                 place = "keys";
                 break;
@@ -225,21 +264,29 @@ public class Player extends Actor {
                 place = "moving";
                 break;
             }
-            player.moving = scanner.nextBoolean();
+            player.setMoving(scanner.nextBoolean());
             if (!scanner.hasNextDouble()) {
                 place = "location.x";
                 break;
             }
-            player.location.x = scanner.nextDouble();
+            double x = scanner.nextDouble();
             if (!scanner.hasNextDouble()) {
                 place = "location.y";
                 break;
             }
-            player.location.y = scanner.nextDouble();
+            player.setLocation(x, scanner.nextDouble());
             satisfied = true;
         } while (false);
         if (!satisfied)
             throw new DataFormatException("invalid data structure (" + place + ": " + scanner.next() + ")");
+        if (player.lives < MIN_LIVES || player.lives > MAX_LIVES)
+            throw new DataFormatException("lives out of range");
+        if (player.maxLives < 0 || player.maxLives > MAX_MAX_LIVES)
+            throw new DataFormatException("maxLives out of range");
+        if (player.getSpeed() < 0 || player.getSpeed() > MAX_SPEED)
+            throw new DataFormatException("speed out of range");
+        if (player.keys < 0 || player.keys > MAX_KEYS)
+            throw new DataFormatException("keys out of range");
         return player;
     }
 
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.entity;
+
+/**
+ * This enumeration specifies the types of static level geometry that
+ * a {@link edu.tum.rosensteinn.labyrinth.Level} stores in its tile layer
+ * instead of as separate {@link Entity} objects. The ordinal of a tile
+ * is what is stored in the layer, thus {@link #Empty} must stay first.
+ *
+ * Every tile type is backed by a single shared entity that is used
+ * wherever the Entity API is required (eg. collision callbacks or the
+ * visual representation). The location of that entity is meaningless,
+ * the position of a tile is implied by the field it is stored in. Since
+ * the entity is shared by all levels, it must not be modified.
+ */
+public enum Tile {
+    Empty(null),
+    Wall(new Wall()),
+    Entrance(new Entrance()),
+    Exit(new Exit()),
+    StaticThreat(new StaticThreat());
+
+    private static final Tile[] values = Tile.values();
+
+    private final Entity entity;
+
+    private Tile(Entity entity) {
+        this.entity = entity;
+    }
+
+    /**
+     * @return The shared {@link Entity} that represents this tile type,
+     *         or {@code null} for {@link #Empty}. It must not be modified.
+     */
+    public Entity getEntity() {
+        return this.entity;
+    }
+
+    /**
+     * @return {@code true} if the tile blocks solid entities.
+     */
+    public boolean isSolid() {
+        return this.entity != null && this.entity.isSolid();
+    }
+
+    /**
+     * @param entity
+     * @return The tile type that the entity is a plain instance of, or
+     *         {@code null} if the entity can not be represented by a
+     *         tile. Instances of subclasses are never represented by
+     *         a tile as they might carry state or behaviour.
+     */
+    public static Tile forEntity(Entity entity) {
+        for (Tile tile : Tile.values) {
+            if (tile.entity != null && tile.entity.getClass() == entity.getClass()) {
+                return tile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The value that represents this tile in a tile layer.
+     */
+    public byte toByte() {
+        return (byte) this.ordinal();
+    }
+
+    /**
+     * @param value          A value returned by {@link #toByte()}.
+     * @return The tile that is represented by the specified value.
+     */
+    public static Tile fromByte(byte value) {
+        return Tile.values[value];
+    }
+
+}
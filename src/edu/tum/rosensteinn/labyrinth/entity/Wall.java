@@ -28,7 +28,8 @@ import edu.tum.rosensteinn.labyrinth.gui.Screen;
 import com.googlecode.lanterna.terminal.Terminal.Color;
 
 /**
- * Represents a wall.
+ * Represents a wall. Walls are stored as {@link Tile#Wall} in a level,
+ * see {@link Tile#forEntity(Entity)}.
  */
 public class Wall extends Entity {
 
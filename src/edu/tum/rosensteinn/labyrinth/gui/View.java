@@ -86,6 +86,32 @@ public abstract class View {
         // intentionally left blank
     }
 
+    /**
+     * Called when the {@link Window} is closed while the view is active
+     * or lies beneath the active view. Resources such as open files should
+     * be released here.
+     *
+     * @param window
+     */
+    public void onClose(Window window) {
+        // intentionally left blank
+    }
+
+    /**
+     * Views are rendered by the render thread while the events are
+     * dispatched in the main thread. Unless this method returns {@code
+     * true}, the {@link Window} does not render the view while events are
+     * dispatched. A view that overrides this must only read state in
+     * {@link #render(Window, boolean)} that is safe to access concurrently
+     * to {@link #onEvent(Window, Event)}.
+     *
+     * @return {@code true} if the view can be rendered while it receives
+     *         events in another thread.
+     */
+    public boolean isRenderedConcurrently() {
+        return false;
+    }
+
     /**
      * Called to render the view on the {@link Terminal}.
      *
@@ -47,19 +47,22 @@ public class Window {
     private class ResizeListener implements Terminal.ResizeListener {
         @Override
         public void onResized(TerminalSize terminalSize) {
-            isInitial = true;
-            if (view != null) {
-                int cols = terminalSize.getColumns();
-                int rows = terminalSize.getRows();
-                Point size = new Point(cols, rows);
-                view.onResized(Window.this, size);
+            synchronized (lock) {
+                isInitial = true;
+                if (view != null) {
+                    int cols = terminalSize.getColumns();
+                    int rows = terminalSize.getRows();
+                    Point size = new Point(cols, rows);
+                    view.onResized(Window.this, size);
+                }
             }
         }
     }
 
     private final SwingTerminal terminal;
     private final Screen screen;
-    private View view;
+    private final Object lock = new Object();
+    private volatile View view;
     private boolean open;
     private boolean resizable;
     private boolean isInitial;
@@ -99,11 +102,28 @@ public class Window {
     }
 
     /**
-     * Close the {@link SwingTerminal}.
+     * Close the {@link SwingTerminal}. The active view and the views
+     * beneath it are notified through {@link View#onClose(Window)}. Does
+     * nothing if the Window is not open.
      */
-    public synchronized final void close() {
-        this.terminal.exitPrivateMode();
-        this.open = false;
+    public final void close() {
+        // Notify the views while no events are dispatched to them.
+        synchronized (this.lock) {
+            synchronized (this) {
+                if (!this.open) {
+                    return;
+                }
+                this.open = false;
+            }
+            java.util.Set<View> closed = java.util.Collections.newSetFromMap(
+                    new java.util.IdentityHashMap<View, Boolean>());
+            for (View view = this.view; view != null && closed.add(view); view = view.getBack()) {
+                view.onClose(this);
+            }
+        }
+        synchronized (this) {
+            this.terminal.exitPrivateMode();
+        }
     }
 
     /**
@@ -163,12 +183,14 @@ public class Window {
      * @param view           The view to make active.
      */
     public final void setView(View view) {
-        if (this.view != view) {
-            this.isInitial = true;
-        }
-        this.view = view;
-        if (this.view != null) {
-            this.view.onFocus(this);
+        synchronized (this.lock) {
+            if (this.view != view) {
+                this.isInitial = true;
+            }
+            this.view = view;
+            if (view != null) {
+                view.onFocus(this);
+            }
         }
     }
 
@@ -201,33 +223,48 @@ public class Window {
      * to the active view.
      */
     public final void dispatchEvents() {
-        if (this.view != null) {
-            this.view.onEvent(this, new ReocurringEvent());
-        }
-        Key key = this.terminal.readInput();
-        while (key != null) {
+        synchronized (this.lock) {
             if (this.view != null) {
-                this.view.onEvent(this, new KeyboardEvent(key));
+                this.view.onEvent(this, new ReocurringEvent());
+            }
+            Key key = this.terminal.readInput();
+            while (key != null) {
+                if (this.view != null) {
+                    this.view.onEvent(this, new KeyboardEvent(key));
+                }
+                key = this.terminal.readInput();
             }
-            key = this.terminal.readInput();
         }
     }
 
     /**
-     * Redraws the active view on the terminal. This function synchronizes
-     * the terminal so that it can be painted without data races.
+     * Redraws the active view on the terminal. This method should be
+     * called from a single render thread, which may be another thread than
+     * the one calling {@link #dispatchEvents()}. Views are rendered while
+     * no events are dispatched, unless they are {@link
+     * View#isRenderedConcurrently() rendered concurrently}.
      */
     public final void redraw() {
-        // Render the active view or clear the screen if there is
-        // no active view.
-        if (this.view != null) {
-            this.view.render(this, this.isInitial);
+        View view;
+        boolean initial;
+        synchronized (this.lock) {
+            view = this.view;
+            initial = this.isInitial;
             this.isInitial = false;
+
+            // Render the active view or clear the screen if there is
+            // no active view.
+            if (view == null) {
+                this.screen.applyBackgroundColor(Terminal.Color.BLACK);
+                this.screen.clear();
+                return;
+            }
+            else if (!view.isRenderedConcurrently()) {
+                view.render(this, initial);
+                return;
+            }
         }
-        else {
-            this.screen.applyBackgroundColor(Terminal.Color.BLACK);
-            this.screen.clear();
-        }
+        view.render(this, initial);
 
         // Blit the screen on the terminal.
         // this.screen.completeRefresh();
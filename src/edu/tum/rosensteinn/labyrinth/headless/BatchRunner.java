@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.headless;
+
+import edu.tum.rosensteinn.labyrinth.DataFormatException;
+import edu.tum.rosensteinn.labyrinth.Level;
+import edu.tum.rosensteinn.labyrinth.Main;
+
+/**
+ * Runs levels one after another without opening a window and prints
+ * the result of each. Started through {@code Main --headless}, see
+ * {@link #main(String[])} for the arguments.
+ */
+public class BatchRunner {
+
+    private static void usage() {
+        System.err.println("usage: --headless [--ticks N] [--rate R] [--seed S] [--input FILE] [--lod] LEVEL...");
+        System.err.println();
+        System.err.println("  --ticks N      maximum number of ticks per level (default 36000)");
+        System.err.println("  --rate R       ticks per simulated second (default Main.tickRate)");
+        System.err.println("  --seed S       seed of the levels (default: saved in the level or random)");
+        System.err.println("  --input FILE   script of key presses, see ScriptedController");
+        System.err.println("  --lod          enable the simulation level of detail, see Main.simulationLod");
+    }
+
+    /**
+     * @param args           Options followed by the level files to run.
+     */
+    public static void main(String[] args) {
+        long maxTicks = 36000;
+        double tickRate = Main.tickRate;
+        Long seed = null;
+        java.io.File input = null;
+        java.util.List<java.io.File> files = new java.util.ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--ticks":
+                        maxTicks = Long.parseLong(args[++i]);
+                        break;
+                    case "--rate":
+                        tickRate = Double.parseDouble(args[++i]);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--input":
+                        input = new java.io.File(args[++i]);
+                        break;
+                    case "--lod":
+                        Main.simulationLod = true;
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            BatchRunner.usage();
+                            System.exit(2);
+                        }
+                        files.add(new java.io.File(args[i]));
+                }
+            }
+        }
+        catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            BatchRunner.usage();
+            System.exit(2);
+        }
+        if (files.isEmpty()) {
+            BatchRunner.usage();
+            System.exit(2);
+        }
+
+        int failures = 0;
+        long totalTicks = 0;
+        long totalNanos = 0;
+        for (java.io.File file : files) {
+            Simulation.Result result;
+            try {
+                Level level = Main.loadLevel(file, seed);
+                Controller controller = input == null
+                        ? (l, tick) -> { }
+                        : ScriptedController.read(input);
+                Simulation simulation = new Simulation(file.getPath(), level, controller, tickRate);
+                result = simulation.run(maxTicks);
+            }
+            catch (DataFormatException e) {
+                System.err.println(file + ": " + e.getMessage());
+                failures += 1;
+                continue;
+            }
+            System.out.println(result);
+            totalTicks += result.ticks;
+            totalNanos += result.updateNanos;
+        }
+
+        if (files.size() > 1 && totalNanos > 0) {
+            System.out.println(String.format(java.util.Locale.US,
+                    "total: %d ticks, %.0f ticks/s",
+                    totalTicks, totalTicks / (totalNanos / 1000000000.0)));
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.headless;
+
+import edu.tum.rosensteinn.labyrinth.Level;
+import edu.tum.rosensteinn.labyrinth.Point;
+import edu.tum.rosensteinn.labyrinth.entity.Entity;
+import edu.tum.rosensteinn.labyrinth.entity.Key;
+import edu.tum.rosensteinn.labyrinth.entity.Player;
+import edu.tum.rosensteinn.labyrinth.entity.Tile;
+import edu.tum.rosensteinn.labyrinth.gui.KeyboardEvent;
+import edu.tum.rosensteinn.labyrinth.tools.LongIntMap;
+
+/**
+ * A {@link Controller} that plays the level. It walks the shortest way
+ * to the nearest key that has not been collected yet and to the exit
+ * once all keys are collected, avoiding solid fields and static threats.
+ * From time to time it wanders off into a random direction instead,
+ * driven by a random number generator with a fixed seed.
+ */
+public class BotController implements Controller {
+
+    // The number of ticks after which the path is searched again even
+    // if the player did not move to another field.
+    private static final int REPLAN_TICKS = 30;
+
+    // The maximum number of fields a search visits before it gives up,
+    // which bounds its memory on large levels.
+    private static final int MAX_SEARCH_FIELDS = 1 << 18;
+
+    private static final Point[] steps = {
+        new Point(-1, 0), new Point(1, 0), new Point(0, -1), new Point(0, 1)
+    };
+    private static final KeyboardEvent[] events = {
+        new KeyboardEvent(new com.googlecode.lanterna.input.Key(
+                com.googlecode.lanterna.input.Key.Kind.ArrowLeft)),
+        new KeyboardEvent(new com.googlecode.lanterna.input.Key(
+                com.googlecode.lanterna.input.Key.Kind.ArrowRight)),
+        new KeyboardEvent(new com.googlecode.lanterna.input.Key(
+                com.googlecode.lanterna.input.Key.Kind.ArrowUp)),
+        new KeyboardEvent(new com.googlecode.lanterna.input.Key(
+                com.googlecode.lanterna.input.Key.Kind.ArrowDown)),
+    };
+
+    private final java.util.Random random;
+    private final double wanderProbability;
+
+    // Breadth-first search state, reused between searches. The nodes are
+    // the packed coordinates of the queued fields in the order they were
+    // queued, visited maps each queued field to its node. Only the fields
+    // the search reaches are stored, not the whole level.
+    private final LongIntMap visited = new LongIntMap();
+    private final LongIntMap targets = new LongIntMap();
+    private long[] nodes = new long[64];
+    private int[] parents = new int[64];
+    private java.util.List<Point> exits = null;
+
+    private int direction = -1;
+    private int wanderTicks = 0;
+    private long lastPlan = Long.MIN_VALUE;
+    private int lastX = -1;
+    private int lastY = -1;
+
+    /**
+     * @param seed           The seed of the random number generator.
+     * @param wanderProbability  The probability to wander off into a
+     *                       random direction whenever the path is searched.
+     */
+    public BotController(long seed, double wanderProbability) {
+        this.random = new java.util.Random(seed);
+        this.wanderProbability = wanderProbability;
+    }
+
+    public BotController(long seed) {
+        this(seed, 0.05);
+    }
+
+    @Override
+    public void control(Level level, long tick) {
+        Player player = level.getPlayer();
+        if (player == null) {
+            return;
+        }
+        Point pos = player.getLocation().toPoint();
+        if (this.wanderTicks > 0) {
+            this.wanderTicks -= 1;
+        }
+        else if (pos.x != this.lastX || pos.y != this.lastY
+                || tick - this.lastPlan >= REPLAN_TICKS) {
+            this.lastX = pos.x;
+            this.lastY = pos.y;
+            this.lastPlan = tick;
+            if (this.random.nextDouble() < this.wanderProbability) {
+                this.direction = this.random.nextInt(steps.length);
+                this.wanderTicks = REPLAN_TICKS;
+            }
+            else {
+                this.direction = this.search(level, pos);
+                if (this.direction < 0) {
+                    this.direction = this.random.nextInt(steps.length);
+                }
+            }
+        }
+        level.event(events[this.direction]);
+    }
+
+    /**
+     * Searches the shortest path from {@code start} to the nearest target.
+     * The search gives up after {@link #MAX_SEARCH_FIELDS} fields.
+     *
+     * @param level
+     * @param start
+     * @return The index of the first step on the path in {@link #steps},
+     *         or -1 if no target can be reached.
+     */
+    private int search(Level level, Point start) {
+        Point size = level.getSize();
+        LongIntMap visited = this.visited;
+        LongIntMap targets = this.targets;
+        visited.clear();
+        targets.clear();
+
+        // Mark the keys that are left, or the exits if there are none.
+        if (level.getRemainingKeys() > 0) {
+            for (Entity key : level.getEntitiesByClass(Key.class)) {
+                Point p = key.getLocation().toPoint();
+                if (key.isAlive() && p.x >= 0 && p.x < size.x && p.y >= 0 && p.y < size.y) {
+                    targets.put(Point.pack(p.x, p.y), 0);
+                }
+            }
+        }
+        else {
+            if (this.exits == null) {
+                this.exits = level.getTilePositions(Tile.Exit);
+            }
+            for (Point p : this.exits) {
+                targets.put(Point.pack(p.x, p.y), 0);
+            }
+        }
+        if (targets.size() == 0 || start.x < 0 || start.x >= size.x || start.y < 0 || start.y >= size.y) {
+            return -1;
+        }
+
+        // Node 0 is the start, every other node was queued from its parent.
+        int head = 0;
+        int tail = 0;
+        this.nodes[tail] = Point.pack(start.x, start.y);
+        this.parents[tail] = -1;
+        visited.put(this.nodes[tail], tail);
+        tail += 1;
+        while (head < tail) {
+            int node = head++;
+            long field = this.nodes[node];
+            if (targets.get(field) >= 0) {
+                // Walk back to the field next to the start.
+                while (node != 0 && this.parents[node] != 0) {
+                    node = this.parents[node];
+                }
+                return this.getStep(start, this.nodes[node]);
+            }
+            int x = Point.unpackX(field);
+            int y = Point.unpackY(field);
+            for (Point step : steps) {
+                int nx = x + step.x;
+                int ny = y + step.y;
+                if (nx < 0 || nx >= size.x || ny < 0 || ny >= size.y) {
+                    continue;
+                }
+                long next = Point.pack(nx, ny);
+                if (visited.get(next) >= 0) {
+                    continue;
+                }
+                if (targets.get(next) < 0
+                        && (level.isSolidAt(nx, ny) || level.getTileAt(nx, ny) == Tile.StaticThreat)) {
+                    continue;
+                }
+                if (tail == MAX_SEARCH_FIELDS) {
+                    return -1;
+                }
+                if (tail == this.nodes.length) {
+                    this.nodes = java.util.Arrays.copyOf(this.nodes, tail * 2);
+                    this.parents = java.util.Arrays.copyOf(this.parents, tail * 2);
+                }
+                this.nodes[tail] = next;
+                this.parents[tail] = node;
+                visited.put(next, tail);
+                tail += 1;
+            }
+        }
+        return -1;
+    }
+
+    private int getStep(Point from, long to) {
+        int dx = Point.unpackX(to) - from.x;
+        int dy = Point.unpackY(to) - from.y;
+        for (int i = 0; i < steps.length; ++i) {
+            if (steps[i].x == dx && steps[i].y == dy) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
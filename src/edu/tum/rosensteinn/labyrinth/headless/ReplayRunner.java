@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.headless;
+
+import edu.tum.rosensteinn.labyrinth.DataFormatException;
+import edu.tum.rosensteinn.labyrinth.Level;
+import edu.tum.rosensteinn.labyrinth.Main;
+import edu.tum.rosensteinn.labyrinth.RewindBuffer;
+import edu.tum.rosensteinn.labyrinth.entity.Player;
+import edu.tum.rosensteinn.labyrinth.gui.KeyboardEvent;
+import edu.tum.rosensteinn.labyrinth.replay.Replay;
+import edu.tum.rosensteinn.labyrinth.replay.ReplayReader;
+
+import com.googlecode.lanterna.input.Key;
+
+/**
+ * Plays replays back without a window and as fast as possible. The level
+ * is loaded with the recorded seed and receives the recorded keys and
+ * delta times, so it goes through exactly the same states as in the
+ * recorded game. Started through {@code Main --replay}, see {@link
+ * #main(String[])} for the arguments.
+ */
+public class ReplayRunner {
+
+    /**
+     * Plays a replay back.
+     *
+     * @param file           The replay file.
+     * @param levelFile      The level file to play the replay on, or {@code
+     *                       null} to use the path stored in the replay.
+     * @return The result of the replayed game. The outcome is {@link
+     *         Simulation.Outcome#Timeout} if the replay ended before the
+     *         game was won or lost.
+     * @throws java.io.IOException
+     * @throws DataFormatException if the replay or level file is invalid
+     *         or the level file differs from the recorded one.
+     */
+    public static Simulation.Result play(java.io.File file, java.io.File levelFile)
+        throws java.io.IOException
+    {
+        try (ReplayReader reader = new ReplayReader(file)) {
+            if (levelFile == null) {
+                levelFile = new java.io.File(reader.getLevelPath());
+            }
+            if (!levelFile.isFile()) {
+                throw new DataFormatException("'%s' does not exist.", levelFile);
+            }
+            if (Replay.hashFile(levelFile) != reader.getLevelHash()) {
+                throw new DataFormatException(
+                        "'%s' differs from the level the replay was recorded on", levelFile);
+            }
+            Level level = Main.loadLevel(levelFile, reader.getSeed());
+            RewindBuffer rewindBuffer = Main.createRewindBuffer(level);
+
+            long ticks = 0;
+            long updateNanos = 0;
+            long maxTickNanos = 0;
+            double simulatedTime = 0.0;
+            Simulation.Outcome outcome = Simulation.getOutcome(level);
+            while (outcome == null && reader.nextTick()) {
+                for (Key key : reader.getKeys()) {
+                    if (Main.isRewindKey(key)) {
+                        if (rewindBuffer != null) {
+                            rewindBuffer.rewind(Main.rewindStep);
+                        }
+                    }
+                    else {
+                        level.event(new KeyboardEvent(key));
+                    }
+                }
+                long start = System.nanoTime();
+                level.update(reader.getDeltaTime());
+                long duration = System.nanoTime() - start;
+                updateNanos += duration;
+                maxTickNanos = Math.max(maxTickNanos, duration);
+                simulatedTime += reader.getDeltaTime();
+                ticks += 1;
+                outcome = Simulation.getOutcome(level);
+            }
+            if (outcome == null) {
+                outcome = Simulation.Outcome.Timeout;
+            }
+
+            Player player = level.getPlayer();
+            return new Simulation.Result(file.getPath(), outcome, ticks, simulatedTime,
+                    updateNanos, maxTickNanos,
+                    player == null ? 0 : player.lives,
+                    player == null ? 0 : player.keys);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("usage: --replay [--repeat N] [--level FILE] REPLAY...");
+        System.err.println();
+        System.err.println("  --repeat N     number of times each replay is played (default 1)");
+        System.err.println("  --level FILE   level file to play on (default: path in the replay)");
+    }
+
+    /**
+     * @param args           Options followed by the replay files to play.
+     */
+    public static void main(String[] args) {
+        int repeat = 1;
+        java.io.File levelFile = null;
+        java.util.List<java.io.File> files = new java.util.ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--repeat":
+                        repeat = Integer.parseInt(args[++i]);
+                        break;
+                    case "--level":
+                        levelFile = new java.io.File(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            ReplayRunner.usage();
+                            System.exit(2);
+                        }
+                        files.add(new java.io.File(args[i]));
+                }
+            }
+        }
+        catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            ReplayRunner.usage();
+            System.exit(2);
+        }
+        if (files.isEmpty() || repeat <= 0) {
+            ReplayRunner.usage();
+            System.exit(2);
+        }
+
+        int failures = 0;
+        for (java.io.File file : files) {
+            for (int i = 0; i < repeat; ++i) {
+                try {
+                    System.out.println(ReplayRunner.play(file, levelFile));
+                }
+                catch (java.io.IOException | DataFormatException e) {
+                    System.err.println(file + ": " + e.getMessage());
+                    failures += 1;
+                    break;
+                }
+            }
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.headless;
+
+import edu.tum.rosensteinn.labyrinth.DataFormatException;
+import edu.tum.rosensteinn.labyrinth.Level;
+import edu.tum.rosensteinn.labyrinth.gui.KeyboardEvent;
+
+import com.googlecode.lanterna.input.Key;
+
+/**
+ * A {@link Controller} that presses keys at predefined ticks. A script
+ * is read from a text file with one key press per line in the format
+ * {@code <tick> <key>}, where the key is one of {@code Left}, {@code
+ * Right}, {@code Up}, {@code Down} or {@code Stop}. Empty lines and lines
+ * starting with {@code #} are ignored.
+ */
+public class ScriptedController implements Controller {
+
+    private final long[] ticks;
+    private final Key[] keys;
+    private int next = 0;
+
+    /**
+     * @param ticks          The ticks at which the keys are pressed, in
+     *                       ascending order.
+     * @param keys           The keys to press.
+     */
+    public ScriptedController(long[] ticks, Key[] keys) {
+        if (ticks.length != keys.length) {
+            throw new IllegalArgumentException("ticks and keys differ in length");
+        }
+        this.ticks = ticks;
+        this.keys = keys;
+    }
+
+    @Override
+    public void control(Level level, long tick) {
+        while (this.next < this.ticks.length && this.ticks[this.next] <= tick) {
+            level.event(new KeyboardEvent(this.keys[this.next]));
+            this.next += 1;
+        }
+    }
+
+    /**
+     * Converts the name of a key in a script to a {@link Key}.
+     *
+     * @param name
+     * @return The key, or {@code null} if the name is unknown.
+     */
+    public static Key parseKey(String name) {
+        switch (name) {
+            case "Left":
+                return new Key(Key.Kind.ArrowLeft);
+            case "Right":
+                return new Key(Key.Kind.ArrowRight);
+            case "Up":
+                return new Key(Key.Kind.ArrowUp);
+            case "Down":
+                return new Key(Key.Kind.ArrowDown);
+            case "Stop":
+                return new Key(' ');
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Reads a script from a file.
+     *
+     * @param file
+     * @return The controller that plays the script.
+     * @throws DataFormatException if the file can not be read or is not a
+     *         valid script.
+     */
+    public static ScriptedController read(java.io.File file) {
+        java.util.List<String> lines;
+        try {
+            lines = java.nio.file.Files.readAllLines(file.toPath());
+        }
+        catch (java.io.IOException e) {
+            throw new DataFormatException("could not read '%s': %s", file, e.getMessage());
+        }
+
+        long[] ticks = new long[lines.size()];
+        Key[] keys = new Key[lines.size()];
+        int count = 0;
+        for (int i = 0; i < lines.size(); ++i) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            if (parts.length != 2) {
+                throw new DataFormatException("%s:%d: expected <tick> <key>", file, i + 1);
+            }
+            long tick;
+            try {
+                tick = Long.parseLong(parts[0]);
+            }
+            catch (NumberFormatException e) {
+                throw new DataFormatException("%s:%d: invalid tick '%s'", file, i + 1, parts[0]);
+            }
+            if (tick < 0 || (count > 0 && tick < ticks[count - 1])) {
+                throw new DataFormatException("%s:%d: ticks must be ascending", file, i + 1);
+            }
+            Key key = ScriptedController.parseKey(parts[1]);
+            if (key == null) {
+                throw new DataFormatException("%s:%d: unknown key '%s'", file, i + 1, parts[1]);
+            }
+            ticks[count] = tick;
+            keys[count] = key;
+            count += 1;
+        }
+        return new ScriptedController(
+                java.util.Arrays.copyOf(ticks, count),
+                java.util.Arrays.copyOf(keys, count));
+    }
+
+}
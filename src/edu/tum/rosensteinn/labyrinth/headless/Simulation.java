@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.headless;
+
+import edu.tum.rosensteinn.labyrinth.Level;
+import edu.tum.rosensteinn.labyrinth.entity.Player;
+
+/**
+ * Runs a {@link Level} without a terminal. The level is updated at a
+ * virtual clock: every tick advances the simulated time by the same
+ * amount, no matter how long the update took in real time. The input of
+ * the player is produced by a {@link Controller}.
+ */
+public class Simulation {
+
+    /**
+     * The state a simulation ended in.
+     */
+    public static enum Outcome {
+        Won,
+        Lost,
+        Timeout
+    }
+
+    /**
+     * The outcome and timing of a finished simulation.
+     */
+    public static class Result {
+
+        public final String name;
+        public final Outcome outcome;
+        public final long ticks;
+        public final double simulatedTime;
+        public final long updateNanos;
+        public final long maxTickNanos;
+        public final int lives;
+        public final int keys;
+
+        public Result(String name, Outcome outcome, long ticks, double simulatedTime,
+                long updateNanos, long maxTickNanos, int lives, int keys) {
+            this.name = name;
+            this.outcome = outcome;
+            this.ticks = ticks;
+            this.simulatedTime = simulatedTime;
+            this.updateNanos = updateNanos;
+            this.maxTickNanos = maxTickNanos;
+            this.lives = lives;
+            this.keys = keys;
+        }
+
+        /**
+         * @return The number of ticks that were simulated per second of
+         *         real time spent in {@link Level#update(double)}.
+         */
+        public double getTicksPerSecond() {
+            if (this.updateNanos == 0) {
+                return 0.0;
+            }
+            return this.ticks / (this.updateNanos / 1000000000.0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(java.util.Locale.US,
+                    "%s: %s after %d ticks (%.1fs), lives=%d keys=%d, "
+                    + "%.0f ticks/s, avg %.1fus max %.1fus per tick",
+                    this.name, this.outcome, this.ticks, this.simulatedTime,
+                    this.lives, this.keys, this.getTicksPerSecond(),
+                    this.ticks == 0 ? 0.0 : this.updateNanos / 1000.0 / this.ticks,
+                    this.maxTickNanos / 1000.0);
+        }
+
+    }
+
+    private final String name;
+    private final Level level;
+    private final Controller controller;
+    private final double deltaTime;
+
+    /**
+     * @param name           The name of the simulation in the result.
+     * @param level
+     * @param controller     Produces the input of the player.
+     * @param tickRate       The number of ticks per simulated second.
+     */
+    public Simulation(String name, Level level, Controller controller, double tickRate) {
+        if (tickRate <= 0) {
+            throw new IllegalArgumentException("tickRate must be positive");
+        }
+        this.name = name;
+        this.level = level;
+        this.controller = controller;
+        this.deltaTime = 1.0 / tickRate;
+    }
+
+    /**
+     * @param level
+     * @return The outcome of the level in its current state, or {@code
+     *         null} if the game is still running.
+     */
+    public static Outcome getOutcome(Level level) {
+        Player player = level.getPlayer();
+        if (player == null || player.lives <= 0) {
+            return Outcome.Lost;
+        }
+        else if (player.won) {
+            return Outcome.Won;
+        }
+        return null;
+    }
+
+    /**
+     * Updates the level until the player won or lost, or until the
+     * maximum number of ticks was simulated.
+     *
+     * @param maxTicks
+     * @return The result of the simulation.
+     */
+    public Result run(long maxTicks) {
+        long ticks = 0;
+        long updateNanos = 0;
+        long maxTickNanos = 0;
+        Outcome outcome = Simulation.getOutcome(this.level);
+        while (outcome == null && ticks < maxTicks) {
+            this.controller.control(this.level, ticks);
+            long start = System.nanoTime();
+            this.level.update(this.deltaTime);
+            long duration = System.nanoTime() - start;
+            updateNanos += duration;
+            maxTickNanos = Math.max(maxTickNanos, duration);
+            ticks += 1;
+            outcome = Simulation.getOutcome(this.level);
+        }
+        if (outcome == null) {
+            outcome = Outcome.Timeout;
+        }
+
+        Player player = this.level.getPlayer();
+        return new Result(this.name, outcome, ticks, ticks * this.deltaTime,
+                updateNanos, maxTickNanos,
+                player == null ? 0 : player.lives,
+                player == null ? 0 : player.keys);
+    }
+
+}
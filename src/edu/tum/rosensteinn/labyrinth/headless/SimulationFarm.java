@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.headless;
+
+import edu.tum.rosensteinn.labyrinth.DataFormatException;
+import edu.tum.rosensteinn.labyrinth.Level;
+import edu.tum.rosensteinn.labyrinth.Main;
+
+/**
+ * Runs many independent levels concurrently on a work-stealing pool,
+ * each with its own seed for the level and a {@link BotController}, and
+ * aggregates the results per level file. Runs with the same seed have
+ * the same result. Started through {@code Main
+ * --farm}, see {@link #main(String[])} for the arguments.
+ */
+public class SimulationFarm {
+
+    /**
+     * A level file and the seed to run it with.
+     */
+    public static class Job {
+
+        public final java.io.File file;
+        public final long seed;
+
+        public Job(java.io.File file, long seed) {
+            this.file = file;
+            this.seed = seed;
+        }
+
+    }
+
+    /**
+     * The result of a {@link Job}. Either {@link #result} or {@link
+     * #error} is set.
+     */
+    public static class JobResult {
+
+        public final Job job;
+        public final Simulation.Result result;
+        public final String error;
+
+        public JobResult(Job job, Simulation.Result result, String error) {
+            this.job = job;
+            this.result = result;
+            this.error = error;
+        }
+
+    }
+
+    private final java.util.concurrent.ForkJoinPool pool;
+    private final long maxTicks;
+    private final double tickRate;
+
+    /**
+     * @param threads        The number of worker threads.
+     * @param maxTicks       The maximum number of ticks per level.
+     * @param tickRate       The number of ticks per simulated second.
+     */
+    public SimulationFarm(int threads, long maxTicks, double tickRate) {
+        this.pool = new java.util.concurrent.ForkJoinPool(threads);
+        this.maxTicks = maxTicks;
+        this.tickRate = tickRate;
+    }
+
+    /**
+     * @return The number of worker threads.
+     */
+    public int getThreads() {
+        return this.pool.getParallelism();
+    }
+
+    /**
+     * Runs all jobs and waits for them to finish.
+     *
+     * @param jobs
+     * @return The results in the order of the jobs.
+     */
+    public java.util.List<JobResult> run(java.util.List<Job> jobs) {
+        java.util.List<java.util.concurrent.ForkJoinTask<JobResult>> tasks
+                = new java.util.ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            tasks.add(this.pool.submit(() -> this.runJob(job)));
+        }
+        java.util.List<JobResult> results = new java.util.ArrayList<>(jobs.size());
+        for (java.util.concurrent.ForkJoinTask<JobResult> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    private JobResult runJob(Job job) {
+        try {
+            Level level = Main.loadLevel(job.file, job.seed);
+
+            // The levels are already run in parallel.
+            level.setParallelUpdates(false);
+
+            Simulation simulation = new Simulation(
+                    job.file.getName() + "#" + job.seed, level,
+                    new BotController(job.seed), this.tickRate);
+            return new JobResult(job, simulation.run(this.maxTicks), null);
+        }
+        catch (DataFormatException e) {
+            return new JobResult(job, null, e.getMessage());
+        }
+    }
+
+    /**
+     * Aggregates the results per level file.
+     *
+     * @param results
+     * @return A table with a line per level file.
+     */
+    public static String report(java.util.List<JobResult> results) {
+        java.util.Map<java.io.File, java.util.List<JobResult>> byFile
+                = new java.util.LinkedHashMap<>();
+        for (JobResult result : results) {
+            byFile.computeIfAbsent(result.job.file, f -> new java.util.ArrayList<>()).add(result);
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-32s %5s %5s %5s %7s %6s %10s %10s %12s%n",
+                "level", "runs", "won", "lost", "timeout", "failed",
+                "avg ticks", "avg lives", "ticks/s"));
+        for (java.util.Map.Entry<java.io.File, java.util.List<JobResult>> entry : byFile.entrySet()) {
+            int won = 0, lost = 0, timeout = 0, failed = 0;
+            long ticks = 0, lives = 0, nanos = 0;
+            for (JobResult result : entry.getValue()) {
+                if (result.result == null) {
+                    failed += 1;
+                    continue;
+                }
+                switch (result.result.outcome) {
+                    case Won: won += 1; break;
+                    case Lost: lost += 1; break;
+                    case Timeout: timeout += 1; break;
+                }
+                ticks += result.result.ticks;
+                lives += Math.max(0, result.result.lives);
+                nanos += result.result.updateNanos;
+            }
+            int finished = entry.getValue().size() - failed;
+            builder.append(String.format(java.util.Locale.US,
+                    "%-32s %5d %5d %5d %7d %6d %10.1f %10.2f %12.0f%n",
+                    entry.getKey().getName(), entry.getValue().size(),
+                    won, lost, timeout, failed,
+                    finished == 0 ? 0.0 : (double) ticks / finished,
+                    finished == 0 ? 0.0 : (double) lives / finished,
+                    nanos == 0 ? 0.0 : ticks / (nanos / 1000000000.0)));
+        }
+        return builder.toString();
+    }
+
+    private static void usage() {
+        System.err.println("usage: --farm [--seeds N] [--seed S] [--ticks N] [--threads N] [--lod] [LEVEL...]");
+        System.err.println();
+        System.err.println("  --seeds N      number of runs per level (default 8)");
+        System.err.println("  --seed S       seed of the first run, incremented per run (default 1)");
+        System.err.println("  --ticks N      maximum number of ticks per run (default 36000)");
+        System.err.println("  --threads N    number of worker threads (default: all cores)");
+        System.err.println("  --lod          enable the simulation level of detail, see Main.simulationLod");
+        System.err.println("  LEVEL          level files to run (default: all in Main.levelsFolder)");
+    }
+
+    /**
+     * @param args           Options followed by the level files to run.
+     */
+    public static void main(String[] args) {
+        int seeds = 8;
+        long firstSeed = 1;
+        long maxTicks = 36000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        java.util.List<java.io.File> files = new java.util.ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--seeds":
+                        seeds = Integer.parseInt(args[++i]);
+                        break;
+                    case "--seed":
+                        firstSeed = Long.parseLong(args[++i]);
+                        break;
+                    case "--ticks":
+                        maxTicks = Long.parseLong(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--lod":
+                        Main.simulationLod = true;
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            SimulationFarm.usage();
+                            System.exit(2);
+                        }
+                        files.add(new java.io.File(args[i]));
+                }
+            }
+        }
+        catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            SimulationFarm.usage();
+            System.exit(2);
+        }
+        if (files.isEmpty()) {
+            java.io.File[] found = Main.levelsFolder.listFiles(
+                    (dir, name) -> name.endsWith(".properties") || name.endsWith(".level"));
+            if (found != null) {
+                java.util.Arrays.sort(found);
+                files.addAll(java.util.Arrays.asList(found));
+            }
+        }
+        if (files.isEmpty() || seeds <= 0 || threads <= 0) {
+            SimulationFarm.usage();
+            System.exit(2);
+        }
+
+        java.util.List<Job> jobs = new java.util.ArrayList<>();
+        for (java.io.File file : files) {
+            for (int i = 0; i < seeds; ++i) {
+                jobs.add(new Job(file, firstSeed + i));
+            }
+        }
+
+        SimulationFarm farm = new SimulationFarm(threads, maxTicks, Main.tickRate);
+        long start = System.nanoTime();
+        java.util.List<JobResult> results = farm.run(jobs);
+        long wallNanos = System.nanoTime() - start;
+        farm.shutdown();
+
+        long totalTicks = 0;
+        for (JobResult result : results) {
+            if (result.error != null) {
+                System.err.println(result.job.file + "#" + result.job.seed + ": " + result.error);
+            }
+            else {
+                totalTicks += result.result.ticks;
+            }
+        }
+        System.out.print(SimulationFarm.report(results));
+        System.out.println(String.format(java.util.Locale.US,
+                "%d runs, %d ticks in %.1fs on %d threads, %.0f ticks/s",
+                jobs.size(), totalTicks, wallNanos / 1000000000.0, farm.getThreads(),
+                totalTicks / (wallNanos / 1000000000.0)));
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.replay;
+
+import com.googlecode.lanterna.input.Key;
+
+/**
+ * Describes the binary format of replays. A replay starts with a header
+ *
+ * <pre>
+ *   int     magic number "LBRP"
+ *   byte    format version
+ *   UTF     path of the level file
+ *   long    CRC32 of the level file
+ *   long    seed of the level
+ * </pre>
+ *
+ * followed by one record per tick until the end of the stream. A record
+ * starts with an unsigned variable length integer that holds the number
+ * of events shifted left by one, with the lowest bit set if the delta time
+ * of the tick differs from the previous one. Then the delta time follows
+ * as a double if it changed, and the keys of the events. A key is stored
+ * as a byte with the ordinal of its kind in the lower six bits and the
+ * ctrl and alt modifiers in the upper two, followed by the character as
+ * a char for normal keys. A tick without events and the usual delta time
+ * thus takes a single byte.
+ */
+public final class Replay {
+
+    public static final int MAGIC = 0x4C425250;
+    public static final int VERSION = 1;
+
+    private static final Key.Kind[] kinds = Key.Kind.values();
+
+    private Replay() {
+    }
+
+    /**
+     * Computes the hash of a level file that is stored in a replay to
+     * make sure it is played back on the same level.
+     *
+     * @param file
+     * @return The CRC32 of the file contents.
+     * @throws java.io.IOException
+     */
+    public static long hashFile(java.io.File file) throws java.io.IOException {
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        byte[] buffer = new byte[8192];
+        try (java.io.InputStream in = new java.io.FileInputStream(file)) {
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, count);
+            }
+        }
+        return crc.getValue();
+    }
+
+    static void writeKey(java.io.DataOutputStream out, Key key) throws java.io.IOException {
+        int value = key.getKind().ordinal();
+        if (key.isCtrlPressed()) {
+            value |= 0x40;
+        }
+        if (key.isAltPressed()) {
+            value |= 0x80;
+        }
+        out.writeByte(value);
+        if (key.getKind() == Key.Kind.NormalKey) {
+            out.writeChar(key.getCharacter());
+        }
+    }
+
+    static Key readKey(java.io.DataInputStream in) throws java.io.IOException {
+        int value = in.readUnsignedByte();
+        int ordinal = value & 0x3F;
+        if (ordinal >= kinds.length) {
+            throw new java.io.IOException("invalid key kind " + ordinal);
+        }
+        Key.Kind kind = kinds[ordinal];
+        boolean ctrl = (value & 0x40) != 0;
+        boolean alt = (value & 0x80) != 0;
+        if (kind == Key.Kind.NormalKey) {
+            return new Key(in.readChar(), ctrl, alt);
+        }
+        return new Key(kind, ctrl, alt);
+    }
+
+}
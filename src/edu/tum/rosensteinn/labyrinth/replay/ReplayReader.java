@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.replay;
+
+import edu.tum.rosensteinn.labyrinth.DataFormatException;
+import edu.tum.rosensteinn.labyrinth.tools.VarInt;
+
+import com.googlecode.lanterna.input.Key;
+
+/**
+ * Reads a replay written by {@link ReplayWriter} one tick at a time.
+ */
+public class ReplayReader implements java.io.Closeable {
+
+    private final java.io.DataInputStream in;
+    private final String levelPath;
+    private final long levelHash;
+    private final long seed;
+    private final java.util.List<Key> keys = new java.util.ArrayList<>();
+    private double deltaTime = Double.NaN;
+
+    /**
+     * Opens a replay and reads its header.
+     *
+     * @param file
+     * @throws java.io.IOException
+     * @throws DataFormatException if the file is not a replay.
+     */
+    public ReplayReader(java.io.File file) throws java.io.IOException {
+        this.in = new java.io.DataInputStream(new java.io.BufferedInputStream(
+                new java.io.FileInputStream(file)));
+        try {
+            if (this.in.readInt() != Replay.MAGIC) {
+                throw new DataFormatException("'%s' is not a replay", file);
+            }
+            int version = this.in.readUnsignedByte();
+            if (version != Replay.VERSION) {
+                throw new DataFormatException("unsupported replay version %d", version);
+            }
+            this.levelPath = this.in.readUTF();
+            this.levelHash = this.in.readLong();
+            this.seed = this.in.readLong();
+        }
+        catch (java.io.IOException | DataFormatException e) {
+            this.in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The path of the level file the replay was recorded on.
+     */
+    public String getLevelPath() {
+        return this.levelPath;
+    }
+
+    /**
+     * @return The hash of the level file, see {@link Replay#hashFile(java.io.File)}.
+     */
+    public long getLevelHash() {
+        return this.levelHash;
+    }
+
+    /**
+     * @return The seed of the level.
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Reads the record of the next tick.
+     *
+     * @return {@code false} if the replay has ended.
+     * @throws java.io.IOException
+     */
+    public boolean nextTick() throws java.io.IOException {
+        int header = VarInt.read(this.in);
+        if (header < 0) {
+            return false;
+        }
+        if ((header & 1) != 0) {
+            this.deltaTime = this.in.readDouble();
+        }
+        else if (Double.isNaN(this.deltaTime)) {
+            throw new DataFormatException("replay does not start with a delta time");
+        }
+        this.keys.clear();
+        for (int count = header >>> 1; count > 0; --count) {
+            this.keys.add(Replay.readKey(this.in));
+        }
+        return true;
+    }
+
+    /**
+     * @return The time the level is updated with in the current tick.
+     */
+    public double getDeltaTime() {
+        return this.deltaTime;
+    }
+
+    /**
+     * @return The keys that are passed to the level before the current
+     *         tick. The list is reused for the next tick.
+     */
+    public java.util.List<Key> getKeys() {
+        return this.keys;
+    }
+
+    @Override
+    public void close() throws java.io.IOException {
+        this.in.close();
+    }
+
+}
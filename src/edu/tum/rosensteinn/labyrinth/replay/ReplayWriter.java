@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.replay;
+
+import edu.tum.rosensteinn.labyrinth.Level;
+import edu.tum.rosensteinn.labyrinth.tools.VarInt;
+
+import com.googlecode.lanterna.input.Key;
+
+/**
+ * Records the input and the delta time of every tick of a level into a
+ * replay, see {@link Replay} for the format. Keys are collected with
+ * {@link #addKey(Key)} as they are passed to the level and written with
+ * the next call to {@link #tick(double)}, which must be called before
+ * each update of the level.
+ *
+ * Recording must never interrupt the game, so write errors are printed
+ * and stop the recording instead of being thrown.
+ */
+public class ReplayWriter {
+
+    // The buffered output is flushed every this many ticks.
+    private static final int FLUSH_TICKS = 60;
+
+    private java.io.DataOutputStream out;
+    private final java.util.List<Key> keys = new java.util.ArrayList<>();
+    private double lastDeltaTime = Double.NaN;
+    private int ticksSinceFlush = 0;
+
+    /**
+     * Creates the replay file and writes the header.
+     *
+     * @param file           The file to write the replay to.
+     * @param levelFile      The file the level was loaded from.
+     * @param level          The level right after it was loaded.
+     * @throws java.io.IOException
+     */
+    public ReplayWriter(java.io.File file, java.io.File levelFile, Level level)
+        throws java.io.IOException
+    {
+        long hash = Replay.hashFile(levelFile);
+        this.out = new java.io.DataOutputStream(new java.io.BufferedOutputStream(
+                new java.io.FileOutputStream(file)));
+        try {
+            this.out.writeInt(Replay.MAGIC);
+            this.out.writeByte(Replay.VERSION);
+            this.out.writeUTF(levelFile.getPath());
+            this.out.writeLong(hash);
+            this.out.writeLong(level.getSeed());
+        }
+        catch (java.io.IOException e) {
+            this.out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return {@code true} if the replay is still being recorded.
+     */
+    public boolean isOpen() {
+        return this.out != null;
+    }
+
+    /**
+     * Records a key that is passed to the level before the next tick.
+     *
+     * @param key
+     */
+    public void addKey(Key key) {
+        if (this.out != null) {
+            this.keys.add(key);
+        }
+    }
+
+    /**
+     * Writes the record of a tick with the keys added since the last tick.
+     *
+     * @param deltaTime      The time the level is updated with.
+     */
+    public void tick(double deltaTime) {
+        if (this.out == null) {
+            return;
+        }
+        try {
+            boolean deltaChanged = Double.doubleToLongBits(deltaTime)
+                    != Double.doubleToLongBits(this.lastDeltaTime);
+            VarInt.write(this.out, (this.keys.size() << 1) | (deltaChanged ? 1 : 0));
+            if (deltaChanged) {
+                this.out.writeDouble(deltaTime);
+                this.lastDeltaTime = deltaTime;
+            }
+            for (Key key : this.keys) {
+                Replay.writeKey(this.out, key);
+            }
+            this.keys.clear();
+            if (++this.ticksSinceFlush >= FLUSH_TICKS) {
+                this.ticksSinceFlush = 0;
+                this.out.flush();
+            }
+        }
+        catch (java.io.IOException e) {
+            this.fail(e);
+        }
+    }
+
+    /**
+     * Writes the buffered records to the file.
+     */
+    public void flush() {
+        if (this.out == null) {
+            return;
+        }
+        try {
+            this.out.flush();
+        }
+        catch (java.io.IOException e) {
+            this.fail(e);
+        }
+    }
+
+    /**
+     * Stops the recording and closes the file.
+     */
+    public void close() {
+        if (this.out == null) {
+            return;
+        }
+        try {
+            this.out.close();
+        }
+        catch (java.io.IOException e) {
+            System.err.println("Error writing replay:");
+            e.printStackTrace();
+        }
+        this.out = null;
+    }
+
+    private void fail(java.io.IOException e) {
+        System.err.println("Error writing replay, recording stopped:");
+        e.printStackTrace();
+        try {
+            this.out.close();
+        }
+        catch (java.io.IOException ignored) {
+            // we already reported the error
+        }
+        this.out = null;
+    }
+
+}
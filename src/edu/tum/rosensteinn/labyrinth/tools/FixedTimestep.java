@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.tools;
+
+/**
+ * Converts the real time that passes between calls to {@link #advance()}
+ * into a number of simulation ticks of a fixed length. Time that does not
+ * fill a complete tick is accumulated for the next call. To prevent the
+ * simulation from falling further and further behind when a tick takes
+ * longer than its length, at most a limited number of ticks is returned
+ * per call and the remaining time is dropped.
+ */
+public class FixedTimestep {
+
+    private final long tickNanos;
+    private final int maxTicks;
+    private boolean started;
+    private long lastTime;
+    private long accumulator;
+
+    /**
+     * @param tickRate       The number of ticks per second.
+     * @param maxTicks       The maximum number of ticks returned by a
+     *                       single call to {@link #advance()}.
+     */
+    public FixedTimestep(double tickRate, int maxTicks) {
+        if (tickRate <= 0 || maxTicks <= 0) {
+            throw new IllegalArgumentException("tickRate and maxTicks must be positive");
+        }
+        this.tickNanos = (long) (1000000000.0 / tickRate);
+        this.maxTicks = maxTicks;
+        this.reset();
+    }
+
+    /**
+     * Discards the accumulated time. The next call to {@link #advance()}
+     * starts measuring from scratch and returns no ticks. This should be
+     * called when the simulation was paused.
+     */
+    public void reset() {
+        this.started = false;
+        this.lastTime = 0;
+        this.accumulator = 0;
+    }
+
+    /**
+     * @return The length of a tick in seconds.
+     */
+    public double getDeltaTime() {
+        return this.tickNanos / 1000000000.0;
+    }
+
+    /**
+     * Measures the time since the last call using {@link System#nanoTime()}.
+     *
+     * @return The number of ticks that must be simulated now.
+     */
+    public int advance() {
+        return this.advance(System.nanoTime());
+    }
+
+    /**
+     * @param now            The current time in nanoseconds. Like the
+     *                       result of {@link System#nanoTime()}, it may be
+     *                       negative, only differences are meaningful.
+     * @return The number of ticks that must be simulated now.
+     */
+    public int advance(long now) {
+        if (!this.started) {
+            this.started = true;
+            this.lastTime = now;
+            return 0;
+        }
+        this.accumulator += now - this.lastTime;
+        this.lastTime = now;
+
+        long ticks = this.accumulator / this.tickNanos;
+        if (ticks > this.maxTicks) {
+            // We can not catch up, drop the time we are behind.
+            this.accumulator = 0;
+            return this.maxTicks;
+        }
+        this.accumulator -= ticks * this.tickNanos;
+        return (int) ticks;
+    }
+
+}
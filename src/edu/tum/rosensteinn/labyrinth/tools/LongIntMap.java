@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.tools;
+
+/**
+ * A hash map from {@code long} keys to non-negative {@code int} values
+ * that uses open addressing with linear probing. Unlike a {@link
+ * java.util.HashMap}, it does not box its keys and values and stores
+ * them in two flat arrays, thus lookups and insertions do not allocate.
+ */
+public final class LongIntMap {
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public LongIntMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize   The number of entries the map should be able
+     *                       to hold without growing.
+     */
+    public LongIntMap(int expectedSize) {
+        int capacity = 4;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        this.allocate(capacity);
+    }
+
+    /**
+     * @return The number of entries in the map.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param key
+     * @return The value associated with the key, or -1 if the map does
+     *         not contain the key.
+     */
+    public int get(long key) {
+        int index = this.find(key);
+        return this.values[index];
+    }
+
+    /**
+     * Associates the specified value with the key.
+     *
+     * @param key
+     * @param value          The value, must not be negative.
+     * @return The value that was previously associated with the key, or
+     *         -1 if there was none.
+     */
+    public int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value must not be negative");
+        }
+        int index = this.find(key);
+        int previous = this.values[index];
+        this.keys[index] = key;
+        this.values[index] = value;
+        if (previous < 0) {
+            this.size += 1;
+            if (this.size > (this.mask + 1) * 3 / 4) {
+                this.grow();
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Removes the key from the map.
+     *
+     * @param key
+     * @return The value that was associated with the key, or -1 if the
+     *         map did not contain the key.
+     */
+    public int remove(long key) {
+        int index = this.find(key);
+        int previous = this.values[index];
+        if (previous < 0) {
+            return -1;
+        }
+
+        // Shift back the entries that follow in the same probe sequence
+        // so that no tombstones are required.
+        int hole = index;
+        int next = (hole + 1) & this.mask;
+        while (this.values[next] >= 0) {
+            int home = LongIntMap.hash(this.keys[next]) & this.mask;
+            if (((next - home) & this.mask) >= ((next - hole) & this.mask)) {
+                this.keys[hole] = this.keys[next];
+                this.values[hole] = this.values[next];
+                hole = next;
+            }
+            next = (next + 1) & this.mask;
+        }
+        this.values[hole] = -1;
+        this.size -= 1;
+        return previous;
+    }
+
+    /**
+     * Removes all entries from the map.
+     */
+    public void clear() {
+        java.util.Arrays.fill(this.values, -1);
+        this.size = 0;
+    }
+
+    // ----------------------------------------------------------------------
+
+    /**
+     * @return The index of the key in the table or the index of the free
+     *         slot where it would be inserted.
+     */
+    private int find(long key) {
+        int index = LongIntMap.hash(key) & this.mask;
+        while (this.values[index] >= 0 && this.keys[index] != key) {
+            index = (index + 1) & this.mask;
+        }
+        return index;
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        java.util.Arrays.fill(this.values, -1);
+        this.mask = capacity - 1;
+        this.size = 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldValues[i] >= 0) {
+                int index = this.find(oldKeys[i]);
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+                this.size += 1;
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of the key (finalizer of the MurmurHash3 64 bit
+     * variant) so that neighbouring coordinates do not cluster.
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.tools;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lock-free triple buffer to pass data from one producer thread to one
+ * consumer thread. The producer fills the back buffer and publishes it,
+ * the consumer always reads the most recently published buffer. Neither
+ * thread ever waits for the other, buffers that are published faster than
+ * they are consumed are simply overwritten.
+ *
+ * The buffer objects are allocated once and reused, thus a buffer must be
+ * completely rewritten by the producer before it is published again.
+ *
+ * @param <T> The type of the buffers.
+ */
+public final class TripleBuffer<T> {
+
+    private static final int INDEX_MASK = 3;
+    private static final int DIRTY = 4;
+
+    private final Object[] buffers;
+
+    // The index of the buffer between producer and consumer, with the
+    // DIRTY bit set if it was published and not consumed yet.
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    private int back = 0;   // only accessed by the producer
+    private int front = 2;  // only accessed by the consumer
+
+    /**
+     * @param factory        Called three times to create the buffers.
+     */
+    public TripleBuffer(java.util.function.Supplier<T> factory) {
+        this.buffers = new Object[] { factory.get(), factory.get(), factory.get() };
+    }
+
+    /**
+     * Producer side.
+     *
+     * @return The buffer that may be written to until {@link #publish()}
+     *         is called.
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) this.buffers[this.back];
+    }
+
+    /**
+     * Producer side. Makes the back buffer available to the consumer and
+     * swaps in a new back buffer.
+     */
+    public void publish() {
+        this.back = this.middle.getAndSet(this.back | DIRTY) & INDEX_MASK;
+    }
+
+    /**
+     * Consumer side.
+     *
+     * @return The most recently published buffer. If nothing has been
+     *         published since the last call, the same buffer is returned
+     *         again. Before anything has been published, a buffer that
+     *         was never written to is returned.
+     */
+    @SuppressWarnings("unchecked")
+    public T getFront() {
+        if ((this.middle.get() & DIRTY) != 0) {
+            this.front = this.middle.getAndSet(this.front) & INDEX_MASK;
+        }
+        return (T) this.buffers[this.front];
+    }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.tools;
+
+import edu.tum.rosensteinn.labyrinth.DataFormatException;
+
+/**
+ * Reads and writes unsigned variable length integers as used by the binary
+ * level and replay formats. An integer is stored in groups of seven bits,
+ * least significant group first, with the highest bit of each byte set if
+ * another byte follows. Small numbers thus take a single byte.
+ */
+public final class VarInt {
+
+    private VarInt() {
+    }
+
+    /**
+     * @param out
+     * @param value          The integer, must not be negative.
+     * @throws java.io.IOException
+     */
+    public static void write(java.io.DataOutput out, int value) throws java.io.IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * @param in
+     * @return The integer, or -1 if the stream ended before its first byte.
+     * @throws java.io.IOException if the integer is invalid or the stream
+     *         ends within it.
+     */
+    public static int read(java.io.InputStream in) throws java.io.IOException {
+        int b = in.read();
+        if (b < 0) {
+            return -1;
+        }
+        int value = b & 0x7F;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            b = in.read();
+            if (b < 0) {
+                throw new java.io.EOFException();
+            }
+            if (shift > 28) {
+                throw new java.io.IOException("invalid variable length integer");
+            }
+            value |= (b & 0x7F) << shift;
+        }
+        if (value < 0) {
+            throw new java.io.IOException("invalid variable length integer");
+        }
+        return value;
+    }
+
+    /**
+     * @param data
+     * @return The integer at the position of the buffer.
+     * @throws DataFormatException if the integer is invalid.
+     * @throws java.nio.BufferUnderflowException if the buffer ends within
+     *         the integer.
+     */
+    public static int read(java.nio.ByteBuffer data) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = data.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new DataFormatException("invalid variable length integer");
+    }
+
+}
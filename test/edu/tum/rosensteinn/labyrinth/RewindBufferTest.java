@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth;
+
+import edu.tum.rosensteinn.labyrinth.entity.Enemy;
+import edu.tum.rosensteinn.labyrinth.entity.Entity;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RewindBufferTest {
+
+    // A power of two, so the level time is exact.
+    private static final int TICK_RATE = 64;
+    private static final int INTERVAL = 4;
+    private static final double WINDOW = 2.0;
+    private static final int TICKS = 1000;
+
+    @Test
+    public void rewindsFullWindowAfterFillingTheBuffer() {
+        Level level = new Level(new Point(64, 64), 7);
+        Entity[] enemies = new Entity[8];
+        for (int i = 0; i < enemies.length; ++i) {
+            enemies[i] = new Enemy();
+            enemies[i].setLocation(8 * i, 32);
+            level.addEntity(enemies[i]);
+        }
+        level.commitChanges();
+
+        int capacity = (int) Math.ceil(WINDOW * TICK_RATE / INTERVAL) + 1;
+        RewindBuffer buffer = new RewindBuffer(level, capacity, INTERVAL);
+        level.setRewindBuffer(buffer);
+
+        double[][] history = new double[TICKS + 1][2 * enemies.length];
+        record(enemies, history[0]);
+        for (int tick = 1; tick <= TICKS; ++tick) {
+            level.update(1.0 / TICK_RATE);
+            record(enemies, history[tick]);
+            if (tick >= WINDOW * TICK_RATE) {
+                assertTrue("rewindable time at tick " + tick,
+                        buffer.getRewindableTime() >= WINDOW);
+            }
+        }
+        assertTrue(buffer.size() >= capacity);
+
+        assertTrue(buffer.rewind(WINDOW));
+        double[] expected = history[TICKS - (int) (WINDOW * TICK_RATE)];
+        double[] actual = new double[expected.length];
+        record(enemies, actual);
+        assertArrayEquals(expected, actual, 0.0);
+    }
+
+    private static void record(Entity[] entities, double[] locations) {
+        for (int i = 0; i < entities.length; ++i) {
+            locations[2 * i] = entities[i].getX();
+            locations[2 * i + 1] = entities[i].getY();
+        }
+    }
+
+}
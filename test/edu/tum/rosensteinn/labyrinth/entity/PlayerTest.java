@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.entity;
+
+import edu.tum.rosensteinn.labyrinth.DataFormatException;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PlayerTest {
+
+    @Test
+    public void stateKeepsLargeValues() {
+        Player player = new Player(300, Direction.Left, 1000);
+        player.lives = -2;
+        player.keys = 70;
+        player.setMoving(true);
+        player.won = true;
+        long state = player.saveState();
+
+        Player restored = new Player(0, null, 0);
+        restored.loadState(state);
+        assertEquals(-2, restored.lives);
+        assertEquals(300, restored.maxLives);
+        assertEquals(70, restored.keys);
+        assertEquals(1000, restored.getSpeed());
+        assertEquals(Direction.Left, restored.getDirection());
+        assertTrue(restored.isMoving());
+        assertTrue(restored.won);
+    }
+
+    @Test
+    public void stateKeepsLimits() {
+        Player player = new Player(Player.MAX_MAX_LIVES, Direction.Down, Player.MAX_SPEED);
+        player.lives = Player.MIN_LIVES;
+        player.keys = Player.MAX_KEYS;
+        Player restored = new Player(0, null, 0);
+        restored.loadState(player.saveState());
+        assertEquals(Player.MIN_LIVES, restored.lives);
+        assertEquals(Player.MAX_MAX_LIVES, restored.maxLives);
+        assertEquals(Player.MAX_KEYS, restored.keys);
+        assertEquals(Player.MAX_SPEED, restored.getSpeed());
+        assertEquals(Direction.Down, restored.getDirection());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void saveStateRejectsSpeedOutOfRange() {
+        new Player(3, Direction.Up, Player.MAX_SPEED + 1).saveState();
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void loadRejectsSpeedOutOfRange() {
+        Player.load("3 3 0 " + (Player.MAX_SPEED + 1) + " 0 false 1.0 1.0");
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void loadRejectsMaxLivesOutOfRange() {
+        Player.load("3 " + (Player.MAX_MAX_LIVES + 1) + " 0 5 0 false 1.0 1.0");
+    }
+
+}
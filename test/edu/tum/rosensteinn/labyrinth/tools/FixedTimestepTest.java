@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2015  Niklas Rosenstein
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package edu.tum.rosensteinn.labyrinth.tools;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class FixedTimestepTest {
+
+    private static final long TICK = 1000000000L / 50;
+
+    @Test
+    public void firstAdvanceStartsMeasuring() {
+        FixedTimestep timestep = new FixedTimestep(50.0, 5);
+        assertEquals(0, timestep.advance(1000));
+        assertEquals(2, timestep.advance(1000 + 2 * TICK));
+    }
+
+    @Test
+    public void advanceWithNegativeTimes() {
+        FixedTimestep timestep = new FixedTimestep(50.0, 5);
+        long start = Long.MIN_VALUE / 2;
+        assertEquals(0, timestep.advance(start));
+        assertEquals(1, timestep.advance(start + TICK));
+        assertEquals(3, timestep.advance(start + 4 * TICK));
+        assertEquals(0, timestep.advance(start + 4 * TICK + TICK / 2));
+        assertEquals(1, timestep.advance(start + 5 * TICK));
+    }
+
+    @Test
+    public void advanceAcrossZero() {
+        FixedTimestep timestep = new FixedTimestep(50.0, 5);
+        assertEquals(0, timestep.advance(-TICK));
+        assertEquals(2, timestep.advance(TICK));
+    }
+
+    @Test
+    public void resetStartsMeasuringAgain() {
+        FixedTimestep timestep = new FixedTimestep(50.0, 5);
+        timestep.advance(-10 * TICK);
+        timestep.reset();
+        assertEquals(0, timestep.advance(-5 * TICK));
+        assertEquals(1, timestep.advance(-4 * TICK));
+    }
+
+    @Test
+    public void dropsTimeBeyondMaxTicks() {
+        FixedTimestep timestep = new FixedTimestep(50.0, 5);
+        timestep.advance(-100 * TICK);
+        assertEquals(5, timestep.advance(0));
+        assertEquals(0, timestep.advance(TICK / 2));
+    }
+
+}